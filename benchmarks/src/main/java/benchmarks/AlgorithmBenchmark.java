@@ -0,0 +1,78 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encrypting and decrypting messages with every algorithm, over different
+ * maximum values of the keys and lengths of the message.
+ *
+ * Each benchmark thread has its own algorithm and keys, so running with
+ * more threads (-t) shows how the algorithms scale with concurrent users.
+ *
+ * @author Su Khai Koh
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AlgorithmBenchmark {
+
+    @Param({"RSA", "ElGamal", "Knapsack"})
+    public String algorithm;
+
+    @Param({"10000", "1000000", "1000000000"})
+    public String maxValue;
+
+    @Param({"16", "1024", "65536"})
+    public int messageLength;
+
+    @Param({"encrypt", "decrypt"})
+    public String operation;
+
+    private MethodHandle operationHandle;   // (String) String
+    private String input;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+
+        Object instance = BenchmarkSupport.newAlgorithm(algorithm, maxValue);
+
+        MethodHandle encrypt = BenchmarkSupport.findVirtual("Algorithm", "encrypt",
+                String.class, String.class).bindTo(instance);
+        MethodHandle decrypt = BenchmarkSupport.findVirtual("Algorithm", "decrypt",
+                String.class, String.class).bindTo(instance);
+
+        String message = BenchmarkSupport.randomMessage(messageLength);
+
+        if (operation.equals("encrypt")) {
+            operationHandle = encrypt;
+            input = message;
+        } else if (operation.equals("decrypt")) {
+            operationHandle = decrypt;
+            input = (String) encrypt.invokeExact(message);
+        } else {
+            throw new IllegalArgumentException("Unknown operation: " + operation);
+        }
+    }
+
+    @Benchmark
+    public String run() throws Throwable {
+        return (String) operationHandle.invokeExact(input);
+    }
+}
@@ -0,0 +1,45 @@
+package benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks jar. It takes the usual JMH options, but
+ * writes the results as JSON to jmh-result.json unless another format or
+ * file is given, so the results of every run can be compared.
+ *
+ * @author Su Khai Koh
+ */
+public class BenchmarkMain {
+
+    // File of the results if none is given with -rff
+    public static final String DEFAULT_RESULT = "jmh-result.json";
+
+    public static void main(String[] args) throws Exception {
+
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+
+        if (commandLine.shouldHelp()) {
+            commandLine.showHelp();
+            return;
+        }
+
+        if (commandLine.shouldList()) {
+            new Runner(commandLine).list();
+            return;
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+
+        if (!commandLine.getResultFormat().hasValue())
+            options.resultFormat(ResultFormatType.JSON);
+
+        if (!commandLine.getResult().hasValue())
+            options.result(DEFAULT_RESULT);
+
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,113 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Random;
+
+/**
+ * Helpers shared by the benchmarks. The classes of the program are in the
+ * default package, which cannot be imported, so they are looked up by name
+ * and called through method handles. A method handle bound once in the
+ * setup is called directly by the JIT, so it does not add to the measured
+ * time the way reflection would.
+ *
+ * @author Su Khai Koh
+ */
+final class BenchmarkSupport {
+
+    // Seed of the random messages, so every run measures the same messages
+    static final long SEED = 20160101L;
+
+    private static final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Create an algorithm with all keys generated for the given maximum value.
+     * @param algorithm the class name of the algorithm, i.e "RSA"
+     * @param maxValue the maximum value of the keys
+     * @return the algorithm
+     */
+    static Object newAlgorithm(String algorithm, String maxValue) throws Throwable {
+
+        Object instance = findClass(algorithm).getConstructor().newInstance();
+
+        findVirtual(algorithm, "setMaxValue", void.class, String.class)
+                .invoke(instance, maxValue);
+        findVirtual(algorithm, "generateAllKeys", void.class)
+                .invoke(instance);
+
+        return instance;
+    }
+
+    /**
+     * Find a static method of a class in the default package.
+     * @param className the name of the class
+     * @param name the name of the method
+     * @param returnType the return type of the method
+     * @param parameters the parameter types of the method
+     * @return the method handle
+     */
+    static MethodHandle findStatic(String className, String name,
+            Class<?> returnType, Class<?>... parameters) {
+
+        try {
+            return lookup.findStatic(findClass(className), name,
+                    MethodType.methodType(returnType, parameters));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot find " + className + "." + name, e);
+        }
+    }
+
+    /**
+     * Find an instance method of a class in the default package.
+     * @param className the name of the class
+     * @param name the name of the method
+     * @param returnType the return type of the method
+     * @param parameters the parameter types of the method
+     * @return the method handle, which takes the instance first
+     */
+    static MethodHandle findVirtual(String className, String name,
+            Class<?> returnType, Class<?>... parameters) {
+
+        try {
+            return lookup.findVirtual(findClass(className), name,
+                    MethodType.methodType(returnType, parameters));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot find " + className + "." + name, e);
+        }
+    }
+
+    /**
+     * Generate a message of random alphabetic letters.
+     * @param length the number of letters
+     * @return the message
+     */
+    static String randomMessage(int length) {
+
+        Random random = new Random(SEED);
+
+        char[] message = new char[length];
+
+        for (int i = 0; i < length; i++)
+            message[i] = (char) ('A' + random.nextInt(26));
+
+        return new String(message);
+    }
+
+    /**
+     * Find a class in the default package.
+     * @param className the name of the class
+     * @return the class
+     */
+    private static Class<?> findClass(String className) {
+
+        try {
+            return Class.forName(className);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Cannot find " + className, e);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Converting messages between letters and numbers with Convert, over
+ * different lengths of the message.
+ *
+ * @author Su Khai Koh
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConvertBenchmark {
+
+    private static final MethodHandle STRING_TO_NUMBER = BenchmarkSupport.findStatic(
+            "Convert", "stringToNumber", String.class, String.class);
+
+    private static final MethodHandle NUMBER_TO_STRING = BenchmarkSupport.findStatic(
+            "Convert", "numberToString", String.class, String.class);
+
+    private static final MethodHandle CHARS_TO_NUMBER = BenchmarkSupport.findStatic(
+            "Convert", "charsToNumber", int.class, char.class, char.class);
+
+    @Param({"16", "1024", "65536"})
+    public int messageLength;
+
+    private String message;
+    private String[] blocks;    // number form of every two letters
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        message = BenchmarkSupport.randomMessage(messageLength);
+
+        String number = (String) STRING_TO_NUMBER.invokeExact(message);
+
+        blocks = new String[number.length() / 4];
+        for (int i = 0; i < blocks.length; i++)
+            blocks[i] = number.substring(4 * i, 4 * i + 4);
+    }
+
+    @Benchmark
+    public String stringToNumber() throws Throwable {
+        return (String) STRING_TO_NUMBER.invokeExact(message);
+    }
+
+    @Benchmark
+    public int numberToString() throws Throwable {
+
+        int total = 0;
+
+        for (String block : blocks)
+            total += ((String) NUMBER_TO_STRING.invokeExact(block)).charAt(0);
+
+        return total;
+    }
+
+    @Benchmark
+    public int charsToNumber() throws Throwable {
+
+        int total = 0;
+
+        for (int i = 0; i + 1 < message.length(); i += 2)
+            total += (int) CHARS_TO_NUMBER.invokeExact(message.charAt(i), message.charAt(i + 1));
+
+        return total;
+    }
+}
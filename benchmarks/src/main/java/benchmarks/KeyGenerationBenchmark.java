@@ -0,0 +1,54 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Generating all the keys of every algorithm, over different maximum values
+ * of the keys.
+ *
+ * @author Su Khai Koh
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class KeyGenerationBenchmark {
+
+    @Param({"RSA", "ElGamal", "Knapsack"})
+    public String algorithm;
+
+    @Param({"10000", "1000000", "1000000000"})
+    public String maxValue;
+
+    private MethodHandle generateAllKeys;   // () void
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+
+        Object instance = BenchmarkSupport.newAlgorithm(algorithm, maxValue);
+
+        generateAllKeys = BenchmarkSupport.findVirtual(algorithm, "generateAllKeys",
+                void.class).bindTo(instance);
+    }
+
+    @Benchmark
+    public void generateAllKeys() throws Throwable {
+        generateAllKeys.invokeExact();
+    }
+}
@@ -0,0 +1,64 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Generating random primes, directly with Prime and from the pool of
+ * PrimePool, over different ranges.
+ *
+ * @author Su Khai Koh
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PrimeBenchmark {
+
+    private static final MethodHandle GET_PRIME = BenchmarkSupport.findStatic(
+            "Prime", "getPrime", BigInteger.class, long.class, long.class);
+
+    private static final MethodHandle GET_POOLED_PRIME = BenchmarkSupport.findStatic(
+            "PrimePool", "getPrime", BigInteger.class, long.class, long.class);
+
+    private static final MethodHandle IS_PRIME = BenchmarkSupport.findStatic(
+            "Prime", "isPrime", boolean.class, long.class);
+
+    @Param({"10000", "1000000", "1000000000", "1000000000000000000"})
+    public long high;
+
+    private long candidate;
+
+    @Benchmark
+    public BigInteger getPrime() throws Throwable {
+        return (BigInteger) GET_PRIME.invokeExact(1L, high);
+    }
+
+    @Benchmark
+    public BigInteger getPooledPrime() throws Throwable {
+        return (BigInteger) GET_POOLED_PRIME.invokeExact(1L, high);
+    }
+
+    @Benchmark
+    public boolean isPrime() throws Throwable {
+
+        // Go through the odd numbers below the high value
+        candidate = candidate < 3 ? (high - 1) | 1 : candidate - 2;
+
+        return (boolean) IS_PRIME.invokeExact(candidate);
+    }
+}
@@ -0,0 +1,216 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the LEB128 binary form and the text form of CipherCodec.
+ *
+ * @author Su Khai Koh
+ */
+class CipherCodecTest {
+
+    @Test
+    void writesSevenBitsInEachByte() {
+        assertArrayEquals(bytes(0x00), write(BigInteger.ZERO));
+        assertArrayEquals(bytes(0x7F), write(BigInteger.valueOf(127)));
+        assertArrayEquals(bytes(0x80, 0x01), write(BigInteger.valueOf(128)));
+        assertArrayEquals(bytes(0xE5, 0x8E, 0x26), write(BigInteger.valueOf(624485)));
+    }
+
+    @Test
+    void roundTripsAroundTheSizeOfALong() {
+
+        BigInteger two = BigInteger.valueOf(2);
+
+        for (int bits = 0; bits <= 140; bits++) {
+
+            BigInteger power = two.pow(bits);
+
+            for (BigInteger number : new BigInteger[] {power.subtract(BigInteger.ONE), power,
+                                                       power.add(BigInteger.ONE)})
+                assertEquals(number, roundTrip(number), "Round trip of " + number);
+        }
+    }
+
+    @Test
+    void roundTripsRandomNumbers() {
+
+        Random random = new Random(1);
+
+        for (int i = 0; i < 10000; i++) {
+            BigInteger number = new BigInteger(random.nextInt(300), random);
+            assertEquals(number, roundTrip(number), "Round trip of " + number);
+        }
+    }
+
+    @Test
+    void longAndBigIntegerFormsAreTheSame() {
+
+        Random random = new Random(2);
+
+        for (int i = 0; i < 1000; i++) {
+
+            long value = random.nextLong() >>> (1 + random.nextInt(63));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            CipherCodec.writeNumber(out, value);
+
+            assertArrayEquals(write(BigInteger.valueOf(value)), out.toByteArray());
+        }
+    }
+
+    @Test
+    void readsNumbersOneAfterAnother() throws IOException {
+
+        BigInteger big = BigInteger.ONE.shiftLeft(100).add(BigInteger.TEN);
+        BigInteger[] numbers = {BigInteger.ZERO, big, BigInteger.valueOf(300), big};
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (BigInteger number : numbers)
+            CipherCodec.writeNumber(out, number);
+
+        ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+        InputStream stream = new ByteArrayInputStream(out.toByteArray());
+
+        for (BigInteger number : numbers) {
+            assertEquals(number, CipherCodec.readNumber(buffer));
+            assertEquals(number, CipherCodec.readNumber(stream));
+        }
+
+        assertFalse(buffer.hasRemaining());
+        assertNull(CipherCodec.readNumber(stream));
+    }
+
+    @Test
+    void truncatedNumberIsInvalid() {
+
+        for (byte[] truncated : new byte[][] {bytes(0x80), bytes(0xE5, 0x8E),
+                                              bytes(0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF)}) {
+
+            CipherTextException e = assertThrows(CipherTextException.class,
+                    () -> CipherCodec.readNumber(ByteBuffer.wrap(truncated)));
+
+            assertEquals(BlockAlgorithm.INVALID_CIPHER_TEXT, e.getMessage());
+            assertEquals(truncated.length, e.getPosition());
+
+            IllegalArgumentException streamError = assertThrows(IllegalArgumentException.class,
+                    () -> CipherCodec.readNumber(new ByteArrayInputStream(truncated)));
+
+            assertEquals(BlockAlgorithm.INVALID_CIPHER_TEXT, streamError.getMessage());
+        }
+    }
+
+    @Test
+    void overLongEncodingHasTheSameValue() {
+
+        // Extra groups of zero bits above the highest bit
+        assertEquals(BigInteger.ZERO, read(bytes(0x80, 0x00)));
+        assertEquals(BigInteger.ONE, read(bytes(0x81, 0x80, 0x80, 0x00)));
+
+        // Longer than a long, with a value that fits in a long
+        byte[] padded = new byte[20];
+        padded[0] = (byte) 0xFF;
+        padded[1] = (byte) 0x01;
+        for (int i = 1; i < padded.length - 1; i++)
+            padded[i] |= (byte) 0x80;
+
+        assertEquals(BigInteger.valueOf(255), read(padded));
+    }
+
+    @Test
+    void emptyInput() throws IOException {
+
+        assertThrows(CipherTextException.class, () -> CipherCodec.readNumber(ByteBuffer.allocate(0)));
+        assertNull(CipherCodec.readNumber(new ByteArrayInputStream(new byte[0])));
+
+        assertEquals("", CipherCodec.format(ByteBuffer.allocate(0), 2));
+        assertEquals(0, CipherCodec.toBytes("").remaining());
+    }
+
+    @Test
+    void negativeNumberCannotBeWritten() {
+        assertThrows(IllegalArgumentException.class,
+                () -> CipherCodec.writeNumber(new ByteArrayOutputStream(), BigInteger.ONE.negate()));
+        assertThrows(IllegalArgumentException.class,
+                () -> CipherCodec.writeNumber(new ByteArrayOutputStream(), -1L));
+    }
+
+    @Test
+    void textFormRoundTrip() {
+
+        String text = "1234, 5678\n0, 99999999999999999999999\n";
+
+        ByteBuffer binary = CipherCodec.parse(text, 2);
+
+        assertEquals(text, CipherCodec.format(binary, 2));
+    }
+
+    @Test
+    void incompleteBlockInTextForm() {
+
+        CipherTextException e = assertThrows(CipherTextException.class,
+                () -> CipherCodec.parse("1234, 5678, 9", 2));
+
+        assertEquals(BlockAlgorithm.INVALID_FORMAT, e.getMessage());
+    }
+
+    @Test
+    void invalidNumberInTextForm() {
+
+        CipherTextException e = assertThrows(CipherTextException.class,
+                () -> CipherCodec.parse("1234, 56a8", 2));
+
+        assertEquals(BlockAlgorithm.INVALID_CIPHER_TEXT, e.getMessage());
+        assertEquals(6, e.getPosition());
+    }
+
+    private static BigInteger roundTrip(BigInteger number) {
+        return read(write(number));
+    }
+
+    private static byte[] write(BigInteger number) {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        CipherCodec.writeNumber(out, number);
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Read a number that takes the whole array.
+     * @param bytes the number in binary form
+     * @return the number
+     */
+    private static BigInteger read(byte[] bytes) {
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        BigInteger number = CipherCodec.readNumber(buffer);
+
+        assertFalse(buffer.hasRemaining());
+
+        return number;
+    }
+
+    private static byte[] bytes(int... values) {
+
+        byte[] bytes = new byte[values.length];
+
+        for (int i = 0; i < values.length; i++)
+            bytes[i] = (byte) values[i];
+
+        return bytes;
+    }
+}
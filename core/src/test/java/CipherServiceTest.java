@@ -0,0 +1,153 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of CipherService over HTTP on the loopback address.
+ *
+ * @author Su Khai Koh
+ */
+class CipherServiceTest {
+
+    private static final int CLIENTS = 32;
+    private static final int REQUESTS = 400;
+
+    private CipherService service;
+
+    @BeforeEach
+    void start() throws IOException {
+
+        BigInteger p = BigInteger.valueOf(1000003), q = BigInteger.valueOf(999983);
+        BigInteger e = BigInteger.valueOf(65537);
+        BigInteger d = e.modInverse(p.subtract(BigInteger.ONE).multiply(q.subtract(BigInteger.ONE)));
+
+        service = new CipherService(0);
+        service.addAlgorithm("rsa", new RSA(new RSAKey(p, q, d, p.multiply(q), e)));
+        service.start();
+    }
+
+    @AfterEach
+    void stop() {
+        service.stop();
+    }
+
+    @Test
+    void concurrentRequestsRoundTrip() throws Exception {
+
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        List<Future<String>> results = new ArrayList<Future<String>>();
+
+        try {
+            for (int i = 0; i < REQUESTS; i++) {
+
+                final String message = message(i);
+
+                results.add(clients.submit(new Callable<String>() {
+                    public String call() throws IOException {
+                        return post("/rsa/decrypt", post("/rsa/encrypt", message, 200), 200);
+                    }
+                }));
+            }
+
+            for (int i = 0; i < REQUESTS; i++)
+                assertEquals(blocks(message(i)), results.get(i).get());
+        } finally {
+            clients.shutdown();
+        }
+
+        assertEquals(2 * REQUESTS, service.getRequests());
+        assertTrue(service.getBatches() > 0 && service.getBatches() <= service.getRequests());
+    }
+
+    @Test
+    void invalidRequests() throws IOException {
+        assertEquals(BlockAlgorithm.INVALID_MESSAGE, post("/rsa/encrypt", "AB12", 400));
+        assertEquals(BlockAlgorithm.INVALID_CIPHER_TEXT, post("/rsa/decrypt", "12 ab", 400));
+        assertTrue(post("/des/encrypt", "AB", 404).startsWith("Unknown path"));
+        assertTrue(post("/rsa/sign", "AB", 404).startsWith("Unknown path"));
+    }
+
+    /**
+     * Get a different message for each request.
+     * @param i the number of the request
+     * @return the message
+     */
+    private static String message(int i) {
+
+        StringBuilder message = new StringBuilder();
+
+        for (char c : Integer.toString(i * 7919).toCharArray())
+            message.append((char) ('A' + c - '0')).append('Z');
+
+        return message.toString();
+    }
+
+    /**
+     * Split a message into blocks of two letters, one block on each line.
+     * @param message the message with an even length
+     * @return the decrypted form of the message
+     */
+    private static String blocks(String message) {
+
+        StringBuilder blocks = new StringBuilder();
+
+        for (int i = 0; i < message.length(); i += 2)
+            blocks.append(message, i, i + 2).append('\n');
+
+        return blocks.toString();
+    }
+
+    /**
+     * Send a request to the service.
+     * @param path the path of the request
+     * @param body the body of the request
+     * @param status the expected status of the response
+     * @return the body of the response
+     * @throws IOException if the request fails
+     */
+    private String post(String path, String body, int status) throws IOException {
+
+        URL url = new URL("http://127.0.0.1:" + service.getPort() + path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+
+        OutputStream out = connection.getOutputStream();
+        out.write(body.getBytes(StandardCharsets.ISO_8859_1));
+        out.close();
+
+        assertEquals(status, connection.getResponseCode());
+
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+
+        if (in != null) {
+            byte[] buffer = new byte[1024];
+            int count;
+            while ((count = in.read(buffer)) != -1)
+                response.write(buffer, 0, count);
+            in.close();
+        }
+
+        return new String(response.toByteArray(), StandardCharsets.ISO_8859_1);
+    }
+}
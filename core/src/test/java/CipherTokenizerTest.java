@@ -0,0 +1,202 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of CipherTokenizer. The tokens are written as their value, or as
+ * "!" and the position of the token if it is not a valid number.
+ *
+ * @author Su Khai Koh
+ */
+class CipherTokenizerTest {
+
+    @Test
+    void splitsByCommasAndWhiteSpaces() {
+        assertEquals(Arrays.asList("1234", "5678"), tokens("1234, 5678\n"));
+        assertEquals(Arrays.asList("1", "2", "3"), tokens("1\t2\r\n3"));
+    }
+
+    @Test
+    void ignoresLeadingAndTrailingWhiteSpaces() {
+        assertEquals(Arrays.asList("12", "34"), tokens("  \n12 34"));
+        assertEquals(Arrays.asList("12", "34"), tokens("12 34 \n\n"));
+        assertEquals(Arrays.asList("12"), tokens("\t12\t"));
+    }
+
+    @Test
+    void leadingSeparatorIsAnEmptyToken() {
+        assertEquals(Arrays.asList("!0", "12"), tokens(", 12"));
+        assertEquals(Arrays.asList("!0", "12", "34"), tokens(",12,34"));
+    }
+
+    @Test
+    void trailingSeparatorsHaveNoToken() {
+        assertEquals(Arrays.asList("12"), tokens("12,"));
+        assertEquals(Arrays.asList("12", "34"), tokens("12, 34,\n"));
+        assertEquals(Arrays.<String>asList(), tokens(", "));
+        assertEquals(Arrays.<String>asList(), tokens(",,,"));
+    }
+
+    @Test
+    void repeatedSeparatorsAreCollapsed() {
+        assertEquals(Arrays.asList("12", "34"), tokens("12,,34"));
+        assertEquals(Arrays.asList("12", "34"), tokens("12 ,\n , 34"));
+        assertEquals(Arrays.asList("12", "34"), tokens("12   \t  34"));
+    }
+
+    @Test
+    void removesOtherCharacters() {
+        assertEquals(Arrays.asList("1234", "56"), tokens("(12)(34), 56"));
+        assertEquals(Arrays.asList("12", "34"), tokens("[1-2]; {3.4}"));
+    }
+
+    @Test
+    void tokenWithLettersIsInvalid() {
+        assertEquals(Arrays.asList("12", "!4", "56"), tokens("12, 3a4, 56"));
+        assertEquals(Arrays.asList("!0"), tokens("abc"));
+    }
+
+    @Test
+    void blankTextHasOneEmptyToken() {
+
+        CipherTokenizer tokens = new CipherTokenizer();
+
+        for (char c : " \n\t".toCharArray())
+            assertFalse(tokens.add(c));
+
+        assertTrue(tokens.isBlank());
+        assertTrue(tokens.finish());
+        assertFalse(tokens.isNumber());
+        assertEquals(1, tokens.getCount());
+    }
+
+    @Test
+    void keepsTheValueOfLongNumbers() {
+
+        String big = "123456789012345678901234567890";
+
+        assertEquals(Arrays.asList("999999999999999999", big),
+                tokens("999999999999999999 " + big));
+
+        CipherTokenizer tokens = new CipherTokenizer();
+
+        add(tokens, "999999999999999999 ");
+        assertTrue(tokens.isLong());
+        assertEquals(999999999999999999L, tokens.getLong());
+
+        add(tokens, "1000000000000000000");
+        assertTrue(tokens.finish());
+        assertFalse(tokens.isLong());
+        assertEquals(new BigInteger("1000000000000000000"), tokens.getNumber());
+    }
+
+    @Test
+    void invalidNumberHasItsPosition() {
+
+        CipherTokenizer tokens = new CipherTokenizer();
+
+        add(tokens, "12, ");
+
+        int start = -1;
+        for (char c : "x5,".toCharArray())
+            if (tokens.add(c))
+                start = tokens.getStart();
+
+        assertEquals(4, start);
+
+        NumberFormatException e = assertThrows(NumberFormatException.class, tokens::getNumber);
+        assertEquals("Invalid number at position 4", e.getMessage());
+    }
+
+    @Test
+    void sameTokensAsRegularExpressions() {
+
+        Random random = new Random(1);
+        String characters = "0123456789ab ,\n\t(-";
+
+        for (int i = 0; i < 10000; i++) {
+
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(12);
+
+            for (int j = 0; j < length; j++)
+                text.append(characters.charAt(random.nextInt(characters.length())));
+
+            assertEquals(split(text.toString()), values(text.toString()),
+                    "Tokens of \"" + text + "\"");
+        }
+    }
+
+    /**
+     * Split a text with the tokenizer.
+     * @param text the text
+     * @return the value of every token, or "!" and the position of the
+     *         token if it is not a valid number
+     */
+    private static List<String> tokens(String text) {
+
+        CipherTokenizer tokens = new CipherTokenizer();
+        List<String> result = new ArrayList<String>();
+
+        for (int i = 0; i <= text.length(); i++) {
+
+            boolean ended = i < text.length() ? tokens.add(text.charAt(i)) : tokens.finish();
+
+            if (ended)
+                result.add(tokens.isNumber() ? tokens.getNumber().toString()
+                                             : "!" + tokens.getStart());
+        }
+
+        assertEquals(result.size(), tokens.getCount());
+
+        return result;
+    }
+
+    /**
+     * Split a text with the tokenizer, with the text of every token.
+     * @param text the text
+     * @return the digits of every token, or "" if it is not a valid number
+     */
+    private static List<String> values(String text) {
+
+        List<String> result = new ArrayList<String>();
+
+        for (String token : tokens(text))
+            result.add(token.startsWith("!") ? "" : token);
+
+        return result;
+    }
+
+    /**
+     * Split a text the way it was split before the tokenizer, by trimming
+     * it, removing the other characters and splitting it by commas and
+     * white spaces.
+     * @param text the text
+     * @return the digits of every token, or "" if it is not a valid number
+     */
+    private static List<String> split(String text) {
+
+        text = text.trim().replaceAll("[^a-zA-Z0-9,\\s]", "").replaceAll(",", " ");
+
+        List<String> result = new ArrayList<String>();
+
+        for (String token : text.split("\\s+"))
+            result.add(token.matches("[0-9]+") ? new BigInteger(token).toString() : "");
+
+        return result;
+    }
+
+    private static void add(CipherTokenizer tokens, String text) {
+        for (char c : text.toCharArray())
+            tokens.add(c);
+    }
+}
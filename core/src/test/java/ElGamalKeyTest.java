@@ -0,0 +1,66 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.math.BigInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the shared secrets that ElGamalKey remembers for decryption.
+ *
+ * @author Su Khai Koh
+ */
+class ElGamalKeyTest {
+
+    private static final BigInteger P = BigInteger.valueOf(1000003),
+                                    G = BigInteger.valueOf(2),
+                                    A = BigInteger.valueOf(1234);
+
+    @Test
+    void keepsTheRecentlyUsedSecrets() {
+
+        ElGamalKey.Decryption decryption = new ElGamalKey(A, null, P, G, G.modPow(A, P)).getDecryption();
+
+        for (int i = 0; i < ElGamalKey.MEMO_SIZE; i++)
+            decryption.putSharedSecret(BigInteger.valueOf(i), BigInteger.valueOf(i * 10));
+
+        // Use the first one, so the second one is the least recently used
+        assertEquals(BigInteger.ZERO, decryption.getSharedSecret(BigInteger.ZERO));
+
+        decryption.putSharedSecret(BigInteger.valueOf(-1), BigInteger.TEN);
+
+        assertNull(decryption.getSharedSecret(BigInteger.ONE));
+        assertEquals(BigInteger.ZERO, decryption.getSharedSecret(BigInteger.ZERO));
+        assertEquals(BigInteger.TEN, decryption.getSharedSecret(BigInteger.valueOf(-1)));
+    }
+
+    @Test
+    void newSecretsReplaceTheOldOnes() {
+
+        ElGamalKey.Decryption decryption = new ElGamalKey(A, null, P, G, G.modPow(A, P)).getDecryption();
+
+        for (int i = 0; i < 10 * ElGamalKey.MEMO_SIZE; i++)
+            decryption.putSharedSecret(BigInteger.valueOf(i), BigInteger.valueOf(i));
+
+        int last = 10 * ElGamalKey.MEMO_SIZE - 1;
+
+        // Only the last MEMO_SIZE are kept
+        assertNull(decryption.getSharedSecret(BigInteger.ZERO));
+        assertNull(decryption.getSharedSecret(BigInteger.valueOf(last - ElGamalKey.MEMO_SIZE)));
+
+        for (int i = last - ElGamalKey.MEMO_SIZE + 1; i <= last; i++)
+            assertEquals(BigInteger.valueOf(i), decryption.getSharedSecret(BigInteger.valueOf(i)));
+    }
+
+    @Test
+    void decryptsWithAFixedK() {
+
+        // The same c1 in every block, so the secret is taken from the memo
+        ElGamal elGamal = new ElGamal(new ElGamalKey(A, BigInteger.valueOf(99), P, G, G.modPow(A, P)));
+
+        String cipherText = elGamal.encrypt("HELLOWORLD");
+
+        assertEquals("HE\nLL\nOW\nOR\nLD\n", elGamal.decrypt(cipherText));
+        assertEquals("HE\nLL\nOW\nOR\nLD\n", elGamal.decrypt(cipherText));
+    }
+}
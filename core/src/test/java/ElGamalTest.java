@@ -0,0 +1,113 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the parallel encryption of ElGamal, which has to give the same
+ * cipher text as the encryption one block after another.
+ *
+ * @author Su Khai Koh
+ */
+class ElGamalTest {
+
+    private static final BigInteger A = BigInteger.valueOf(1234),
+                                    K = BigInteger.valueOf(4321);
+
+    @Test
+    void parallelAndSequentialEncryptionAreTheSame() throws IOException {
+
+        // Keys on longs and on BigIntegers
+        for (BigInteger p : new BigInteger[] {BigInteger.valueOf(1000003),
+                                              BigInteger.probablePrime(100, new Random(1))}) {
+
+            ElGamal elGamal = new ElGamal(key(p, K));
+
+            // Long enough to be encrypted in parallel
+            String message = message(2 * BlockAlgorithm.PARALLEL_THRESHOLD + 1);
+
+            String parallel = elGamal.encrypt(message);
+
+            assertEquals(encryptSequentially(elGamal, message), parallel);
+            assertEquals(blocks(message), elGamal.decrypt(parallel));
+        }
+    }
+
+    @Test
+    void parallelEncryptionWithRandomK() {
+
+        ElGamal elGamal = new ElGamal(key(BigInteger.valueOf(1000003), null));
+
+        String message = message(2 * BlockAlgorithm.PARALLEL_THRESHOLD);
+        String cipherText = elGamal.encrypt(message);
+
+        assertNotEquals(cipherText, elGamal.encrypt(message));
+        assertEquals(blocks(message), elGamal.decrypt(cipherText));
+    }
+
+    /**
+     * Encrypt a message through a reader, which encrypts one block after
+     * another on the current thread.
+     * @param elGamal the algorithm
+     * @param message the message
+     * @return the cipher text
+     * @throws IOException if the message cannot be read
+     */
+    private static String encryptSequentially(ElGamal elGamal, String message) throws IOException {
+
+        StringWriter out = new StringWriter();
+
+        elGamal.encrypt(new StringReader(message), out);
+
+        return out.toString();
+    }
+
+    /**
+     * Create the keys with g = 2 and r = g^a (mod p).
+     * @param p the prime number p
+     * @param k the k of every block, or null for a random k in each block
+     * @return the keys
+     */
+    private static ElGamalKey key(BigInteger p, BigInteger k) {
+
+        BigInteger g = BigInteger.valueOf(2);
+
+        return new ElGamalKey(A, k, p, g, g.modPow(A, p));
+    }
+
+    private static String message(int length) {
+
+        Random random = new Random(length);
+        StringBuilder message = new StringBuilder();
+
+        for (int i = 0; i < length; i++)
+            message.append((char) ('A' + random.nextInt(Convert.ALPHABETIC_CHARACTERS)));
+
+        return message.toString();
+    }
+
+    /**
+     * Split a message into blocks of two letters, one block on each line,
+     * where the last letter is followed by an 'X'.
+     * @param message the message
+     * @return the decrypted form of the message
+     */
+    private static String blocks(String message) {
+
+        if (message.length() % 2 != 0)
+            message += "X";
+
+        StringBuilder blocks = new StringBuilder();
+
+        for (int i = 0; i < message.length(); i += 2)
+            blocks.append(message, i, i + 2).append('\n');
+
+        return blocks.toString();
+    }
+}
@@ -0,0 +1,117 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.math.BigInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the ephemeral key precomputation of ElGamal.
+ *
+ * @author Su Khai Koh
+ */
+class EphemeralKeyQueueTest {
+
+    // Longest time for a stopped producer thread to end
+    private static final long STOP_TIMEOUT = 5000;
+
+    private static final BigInteger P = BigInteger.valueOf(7919),
+                                    G = BigInteger.valueOf(7),
+                                    A = BigInteger.valueOf(1234);
+
+    @Test
+    void pairsMatchTheirExponent() {
+
+        BigInteger r = G.modPow(A, P);
+        FixedBaseTable gTable = new FixedBaseTable(G, P, P.bitLength());
+        FixedBaseTable rTable = new FixedBaseTable(r, P, P.bitLength());
+
+        EphemeralKeyQueue queue = new EphemeralKeyQueue(P, G, r, gTable, rTable, 16,
+                RandomSource.FAST);
+
+        try {
+            for (int i = 0; i < 100; i++) {
+
+                BigInteger[] pair = queue.take();
+
+                // r^k = (g^k)^a for the same k
+                assertEquals(pair[0].modPow(A, P), pair[1]);
+            }
+        } finally {
+            queue.stop();
+        }
+    }
+
+    @Test
+    void precomputedEncryptionDecrypts() throws InterruptedException {
+
+        ElGamal elGamal = new ElGamal(newKey(P));
+
+        elGamal.setPrecompute(true);
+
+        try {
+            String cipherText = elGamal.encrypt("HELLOWORLD");
+
+            assertNotNull(elGamal.getKey().getEncryption().getEphemeralKeys());
+            assertEquals("HE\nLL\nOW\nOR\nLD\n", elGamal.decrypt(cipherText));
+        } finally {
+            elGamal.close();
+        }
+
+        assertNull(elGamal.getKey().getEncryption().getEphemeralKeys());
+        awaitProducersStopped();
+    }
+
+    @Test
+    void newKeysStopTheOldQueue() throws InterruptedException {
+
+        ElGamal elGamal = new ElGamal(newKey(P));
+
+        elGamal.setPrecompute(true);
+        elGamal.encrypt("HELLO");
+
+        ElGamalKey oldKey = elGamal.getKey();
+
+        elGamal.setKey(newKey(BigInteger.valueOf(7927)));
+
+        assertNull(oldKey.getEncryption().getEphemeralKeys());
+
+        elGamal.close();
+        awaitProducersStopped();
+    }
+
+    /**
+     * Create the keys with a random k in each block.
+     * @param p the public key p
+     * @return the keys
+     */
+    private static ElGamalKey newKey(BigInteger p) {
+        return new ElGamalKey(A, null, p, G, G.modPow(A, p));
+    }
+
+    /**
+     * Wait for every producer thread of the ephemeral keys to end.
+     * @throws InterruptedException if the test was interrupted
+     */
+    private static void awaitProducersStopped() throws InterruptedException {
+
+        long deadline = System.currentTimeMillis() + STOP_TIMEOUT;
+
+        while (countProducers() > 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+
+        assertEquals(0, countProducers());
+    }
+
+    private static int countProducers() {
+
+        int count = 0;
+
+        for (Thread thread : Thread.getAllStackTraces().keySet())
+            if (thread.getName().equals("elgamal-ephemeral-keys") && thread.isAlive())
+                count++;
+
+        return count;
+    }
+}
@@ -0,0 +1,129 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of FixedBaseTable, which has to give the same powers as
+ * BigInteger.modPow().
+ *
+ * @author Su Khai Koh
+ */
+class FixedBaseTableTest {
+
+    @Test
+    void tableOnLongs() {
+
+        Random random = new Random(1);
+
+        // Odd and even modulo, below and above 2^31, up to the size of a long
+        for (int bits : new int[] {2, 3, 8, 16, 30, 31, 32, 33, 48, 61, 62, 63})
+            for (int i = 0; i < 10; i++)
+                checkRandomTable(random, randomModulus(random, bits));
+    }
+
+    @Test
+    void tableOnBigIntegers() {
+
+        Random random = new Random(2);
+
+        for (int bits : new int[] {64, 65, 100, 512})
+            for (int i = 0; i < 5; i++)
+                checkRandomTable(random, randomModulus(random, bits));
+    }
+
+    @Test
+    void modulusOfOne() {
+
+        for (BigInteger base : new BigInteger[] {BigInteger.ZERO, BigInteger.valueOf(5)}) {
+
+            FixedBaseTable table = new FixedBaseTable(base, BigInteger.ONE, 16);
+
+            assertEquals(BigInteger.ZERO, table.pow(BigInteger.ZERO));
+            assertEquals(BigInteger.ZERO, table.pow(BigInteger.valueOf(1234)));
+        }
+    }
+
+    @Test
+    void exponentsOutsideTheTable() {
+
+        BigInteger p = BigInteger.valueOf(7919);
+        FixedBaseTable table = new FixedBaseTable(BigInteger.valueOf(7), p, 12);
+
+        // Bigger than maxBits, and negative
+        for (long e : new long[] {1L << 12, (1L << 12) + 1, Long.MAX_VALUE, -1, -1234})
+            assertPow(table, BigInteger.valueOf(e));
+
+        assertPow(table, BigInteger.ONE.shiftLeft(200).add(BigInteger.TEN));
+    }
+
+    @Test
+    void exponentsThatDoNotFitInALong() {
+
+        Random random = new Random(3);
+
+        // Table on longs, with exponents of 64 bits and more
+        for (int maxBits : new int[] {64, 65, 100}) {
+
+            BigInteger modulus = randomModulus(random, 61);
+            FixedBaseTable table = new FixedBaseTable(new BigInteger(70, random), modulus, maxBits);
+
+            for (int i = 0; i < 100; i++)
+                assertPow(table, new BigInteger(maxBits, random));
+
+            assertPow(table, BigInteger.ONE.shiftLeft(maxBits).subtract(BigInteger.ONE));
+        }
+    }
+
+    @Test
+    void baseZeroAndBaseAboveTheModulus() {
+
+        BigInteger modulus = BigInteger.valueOf(1000003);
+
+        for (BigInteger base : new BigInteger[] {BigInteger.ZERO, modulus, modulus.add(BigInteger.ONE),
+                                                 modulus.multiply(BigInteger.TEN).add(BigInteger.TEN)}) {
+
+            FixedBaseTable table = new FixedBaseTable(base, modulus, 32);
+
+            for (long e : new long[] {0, 1, 2, 15, 16, 17, 123456789})
+                assertPow(table, BigInteger.valueOf(e));
+        }
+    }
+
+    /**
+     * Check a table with a random base, at every bit length of the
+     * exponents up to maxBits, which is not a multiple of the window.
+     * @param random the random numbers
+     * @param modulus the modulo of the table
+     */
+    private static void checkRandomTable(Random random, BigInteger modulus) {
+
+        int maxBits = modulus.bitLength() + random.nextInt(FixedBaseTable.WINDOW);
+        BigInteger base = new BigInteger(modulus.bitLength() + 4, random);
+
+        FixedBaseTable table = new FixedBaseTable(base, modulus, maxBits);
+
+        assertPow(table, BigInteger.ZERO);
+        assertPow(table, BigInteger.ONE.shiftLeft(maxBits).subtract(BigInteger.ONE));
+
+        for (int bits = 1; bits <= maxBits; bits++)
+            assertPow(table, new BigInteger(bits, random).setBit(bits - 1));
+    }
+
+    /**
+     * Get a random modulo of the given bit length, which is odd or even.
+     * @param random the random numbers
+     * @param bits the bit length, at least 2
+     * @return the modulo
+     */
+    private static BigInteger randomModulus(Random random, int bits) {
+        return new BigInteger(bits - 1, random).setBit(bits - 1);
+    }
+
+    private static void assertPow(FixedBaseTable table, BigInteger exponent) {
+        assertEquals(table.getBase().modPow(exponent, table.getModulus()), table.pow(exponent),
+                table.getBase() + "^" + exponent + " (mod " + table.getModulus() + ")");
+    }
+}
@@ -0,0 +1,207 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the tables of KnapsackKey, which have to give the same cipher
+ * text and the same letters as the loops over the bits of every letter.
+ *
+ * @author Su Khai Koh
+ */
+class KnapsackKeyTest {
+
+    @Test
+    void cipherTableOfGeneratedKeys() {
+        for (int i = 0; i < 20; i++)
+            checkCipherTable(new Knapsack().getKey());
+    }
+
+    @Test
+    void cipherTableOfGivenKeys() {
+
+        Random random = new Random(1);
+
+        for (int weights : new int[] {1, 3, 5, 8, 16, 17, 40})
+            for (int bits : new int[] {8, 60, 100})
+                checkCipherTable(randomKey(random, weights, bits));
+    }
+
+    @Test
+    void cipherTableWithMoreWeightsInWThanS() {
+
+        BigInteger[] S = numbers(2, 3, 7, 14, 30);
+        BigInteger[] W = numbers(5, 6, 7, 8, 9, 10, 11);
+
+        checkCipherTable(new KnapsackKey(BigInteger.valueOf(61), BigInteger.valueOf(17), S, W));
+    }
+
+    @Test
+    void decryptTable() {
+
+        Random random = new Random(3);
+
+        // Up to 16 weights have a decrypt table, the others do not
+        for (int weights : new int[] {1, 3, 5, 8, 15, 16, 17, 20})
+            for (int bits : new int[] {8, 60, 100})
+                checkDecryption(randomKey(random, weights, bits), random);
+    }
+
+    @Test
+    void binaryFormThatDoesNotFitInAnInt() {
+
+        KnapsackKey key = randomKey(new Random(4), 40, 8);
+        BigInteger[] W = key.getW();
+
+        // The letter of the term with the bit 31 cannot be decrypted
+        BigInteger block = W[W.length - 32];
+
+        assertThrows(NumberFormatException.class, () -> decrypt(key, block));
+        assertThrows(NumberFormatException.class, () -> key.getDecryption().decrypt(block));
+
+        checkDecryption(key, new Random(5));
+    }
+
+    /**
+     * Check the decryption of every letter, of the subset sums of W, and of
+     * random blocks that are not subset sums, against the loop over S.
+     * @param key the keys
+     * @param random the random numbers
+     */
+    private static void checkDecryption(KnapsackKey key, Random random) {
+
+        BigInteger[] W = key.getW();
+        KnapsackKey.Decryption decryption = key.getDecryption();
+
+        // Every letter that has a bit in W
+        for (int value = 0; value < Convert.ALPHABETIC_CHARACTERS && (long) value >> W.length == 0; value++)
+            assertEquals(Convert.valueToCharacter(value), decryption.decrypt(key.getCipherText(value)));
+
+        int sums = 1 << Math.min(W.length, 10);
+
+        for (int value = 0; value < sums; value++)
+            assertDecrypts(key, encrypt(W, value));
+
+        BigInteger range = key.getM().shiftLeft(1);
+
+        for (int i = 0; i < 200; i++)
+            assertDecrypts(key, new BigInteger(range.bitLength(), random).mod(range));
+    }
+
+    private static void assertDecrypts(KnapsackKey key, BigInteger block) {
+
+        char expected;
+
+        try {
+            expected = decrypt(key, block);
+        } catch (NumberFormatException e) {
+            assertThrows(NumberFormatException.class, () -> key.getDecryption().decrypt(block));
+            return;
+        }
+
+        assertEquals(expected, key.getDecryption().decrypt(block), "Decryption of " + block);
+    }
+
+    /**
+     * Decrypt a block by building the binary form of t x a^-1 (mod m) with
+     * the terms of S, where the last term is the lowest bit.
+     * @param key the keys
+     * @param block the cipher text of one letter
+     * @return the letter of the block
+     * @throws NumberFormatException if the binary form does not fit in an int
+     */
+    private static char decrypt(KnapsackKey key, BigInteger block) {
+
+        BigInteger[] S = key.getS();
+        BigInteger total = block.multiply(key.getA().modInverse(key.getM())).mod(key.getM());
+
+        StringBuilder binary = new StringBuilder();
+
+        for (int i = S.length - 1; i >= 0; i--) {
+            if (total.compareTo(S[i]) >= 0) {
+                binary.insert(0, "1");
+                total = total.subtract(S[i]);
+            } else {
+                binary.insert(0, "0");
+            }
+        }
+
+        return Convert.binaryToCharacter(binary.toString());
+    }
+
+    private static void checkCipherTable(KnapsackKey key) {
+
+        BigInteger[] W = key.getW();
+
+        for (int value = 0; value < Convert.ALPHABETIC_CHARACTERS; value++)
+            assertEquals(encrypt(W, value), key.getCipherText(value), "Cipher text of " + value);
+    }
+
+    /**
+     * Encrypt a letter by adding up the terms in W of its bits, where the
+     * last term is the lowest bit.
+     * @param W the public key W
+     * @param value the value of the letter
+     * @return the cipher text of the letter
+     */
+    private static BigInteger encrypt(BigInteger[] W, int value) {
+
+        BigInteger total = BigInteger.ZERO;
+
+        for (int j = W.length - 1, bitPosition = 1; j >= 0; j--) {
+
+            if ((value & bitPosition) != 0)
+                total = total.add(W[j]);
+
+            bitPosition <<= 1;
+        }
+
+        return total;
+    }
+
+    /**
+     * Create random keys, with a super-increasing S, a modulo m above the
+     * sum of S, a prime a and W = S x a (mod m).
+     * @param random the random numbers
+     * @param weights the number of terms in S
+     * @param bits the bit length of the first term in S
+     * @return the keys
+     */
+    private static KnapsackKey randomKey(Random random, int weights, int bits) {
+
+        BigInteger[] S = new BigInteger[weights];
+        BigInteger sum = BigInteger.ZERO;
+
+        for (int i = 0; i < weights; i++) {
+            S[i] = sum.add(new BigInteger(bits, random)).add(BigInteger.ONE);
+            sum = sum.add(S[i]);
+        }
+
+        BigInteger m = sum.add(new BigInteger(bits, random)).add(BigInteger.ONE);
+        BigInteger a;
+
+        do {
+            a = BigInteger.probablePrime(Math.max(2, m.bitLength() - 1), random);
+        } while (a.compareTo(m) >= 0 || m.mod(a).signum() == 0);
+
+        BigInteger[] W = new BigInteger[weights];
+
+        for (int i = 0; i < weights; i++)
+            W[i] = S[i].multiply(a).mod(m);
+
+        return new KnapsackKey(m, a, S, W);
+    }
+
+    private static BigInteger[] numbers(long... values) {
+
+        BigInteger[] numbers = new BigInteger[values.length];
+
+        for (int i = 0; i < values.length; i++)
+            numbers[i] = BigInteger.valueOf(values[i]);
+
+        return numbers;
+    }
+}
@@ -0,0 +1,253 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of LongModulus, which has to give the same results as BigInteger
+ * for the Montgomery form of an odd modulo, the small modulo below 2^31 and
+ * the big even modulo.
+ *
+ * @author Su Khai Koh
+ */
+class LongModulusTest {
+
+    // Moduli of every kind, with the edges of each kind
+    private static final long[] MODULI = {
+        1, 2, 3, 97, 65536, (1L << 31) - 1,                     // small, below 2^31
+        1L << 31, (1L << 31) + 2, 1L << 40, Long.MAX_VALUE - 1,  // even, not small
+        (1L << 31) + 1, (1L << 32) + 15, 1000000000000000003L,  // odd, Montgomery
+        (1L << 62) + 1, Long.MAX_VALUE - 24, Long.MAX_VALUE
+    };
+
+    @Test
+    void multiplyOfEveryKindOfModulus() {
+
+        Random random = new Random(1);
+
+        for (long m : MODULI) {
+
+            LongModulus modulus = new LongModulus(m);
+
+            for (long[] pair : edgePairs(m))
+                assertMultiply(modulus, pair[0], pair[1]);
+
+            for (int i = 0; i < 2000; i++)
+                assertMultiply(modulus, random(random, m), random(random, m));
+        }
+    }
+
+    @Test
+    void multiplyOfRandomOddModuli() {
+
+        Random random = new Random(2);
+
+        // Every size of odd modulo, where q of the reduction has its top bit
+        // set about half of the time and q * m is taken as unsigned
+        for (int bits = 32; bits <= 63; bits++) {
+            for (int i = 0; i < 20; i++) {
+
+                long m = (random.nextLong() >>> (64 - bits)) | (1L << (bits - 1)) | 1;
+                LongModulus modulus = new LongModulus(m);
+
+                for (int j = 0; j < 200; j++)
+                    assertMultiply(modulus, random(random, m), random(random, m));
+
+                assertMultiply(modulus, m - 1, m - 1);
+            }
+        }
+    }
+
+    @Test
+    void powOfEveryKindOfModulus() {
+
+        Random random = new Random(3);
+
+        for (long m : MODULI) {
+
+            LongModulus modulus = new LongModulus(m);
+
+            for (long exponent : new long[] {0, 1, 2, 3, 64, m - 1, Long.MAX_VALUE}) {
+                assertPow(modulus, 0, exponent);
+                assertPow(modulus, 1 % m, exponent);
+                assertPow(modulus, m - 1, exponent);
+            }
+
+            for (int i = 0; i < 200; i++)
+                assertPow(modulus, random(random, m), random.nextLong() >>> (1 + random.nextInt(63)));
+        }
+    }
+
+    @Test
+    void powWithExponentsThatDoNotFitInALong() {
+
+        Random random = new Random(5);
+
+        for (long m : MODULI) {
+
+            LongModulus modulus = new LongModulus(m);
+
+            for (BigInteger exponent : new BigInteger[] {BigInteger.ZERO, BigInteger.valueOf(Long.MAX_VALUE),
+                                                         BigInteger.ONE.shiftLeft(63),
+                                                         BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE),
+                                                         BigInteger.ONE.shiftLeft(1000)}) {
+                assertPow(modulus, 0, exponent);
+                assertPow(modulus, m - 1, exponent);
+                assertPow(modulus, random(random, m), exponent);
+            }
+
+            for (int i = 0; i < 50; i++)
+                assertPow(modulus, random(random, m), new BigInteger(64 + random.nextInt(200), random));
+        }
+    }
+
+    @Test
+    void fermatsLittleTheorem() {
+
+        // a^(p-1) = 1 (mod p) for the primes of every kind
+        for (long p : new long[] {(1L << 31) - 1, 4294967311L, 1000000000000000003L, Long.MAX_VALUE - 24}) {
+
+            LongModulus modulus = new LongModulus(p);
+
+            for (long a = 2; a < 100; a++)
+                assertEquals(1, modulus.pow(a, p - 1));
+        }
+    }
+
+    @Test
+    void reduce() {
+
+        for (long m : MODULI) {
+
+            LongModulus modulus = new LongModulus(m);
+            BigInteger bigM = BigInteger.valueOf(m);
+
+            for (long x : new long[] {0, 1, -1, m - 1, m, -m, Long.MAX_VALUE, Long.MIN_VALUE}) {
+
+                BigInteger bigX = BigInteger.valueOf(x);
+
+                assertEquals(bigX.mod(bigM).longValue(), modulus.reduce(x), x + " mod " + m);
+                assertEquals(bigX.mod(bigM).longValue(), modulus.reduce(bigX), x + " mod " + m);
+            }
+
+            for (BigInteger x : new BigInteger[] {BigInteger.ONE.shiftLeft(63), BigInteger.ONE.shiftLeft(200).add(BigInteger.TEN),
+                                                  BigInteger.ONE.shiftLeft(100).negate()})
+                assertEquals(x.mod(bigM).longValue(), modulus.reduce(x), x + " mod " + m);
+        }
+    }
+
+    @Test
+    void mulModSlow() {
+
+        Random random = new Random(4);
+
+        for (long m : MODULI) {
+
+            for (long[] pair : edgePairs(m))
+                assertEquals(expectedMultiply(pair[0], pair[1], m), LongModulus.mulModSlow(pair[0], pair[1], m));
+
+            for (int i = 0; i < 200; i++) {
+                long a = random(random, m), b = random(random, m);
+                assertEquals(expectedMultiply(a, b, m), LongModulus.mulModSlow(a, b, m));
+            }
+        }
+    }
+
+    @Test
+    void modulusMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new LongModulus(0));
+        assertThrows(IllegalArgumentException.class, () -> new LongModulus(-7));
+    }
+
+    @Test
+    void ofOnlyTakesModuliThatFitInALong() {
+
+        BigInteger two = BigInteger.valueOf(2);
+
+        assertEquals(Long.MAX_VALUE, LongModulus.of(BigInteger.valueOf(Long.MAX_VALUE)).getModulus());
+        assertEquals(1, LongModulus.of(BigInteger.ONE).getModulus());
+
+        // 63 bits is the most, 2^63 does not fit
+        assertNotNull(LongModulus.of(two.pow(62)));
+        assertNull(LongModulus.of(two.pow(63)));
+        assertNull(LongModulus.of(two.pow(64).subtract(BigInteger.ONE)));
+        assertNull(LongModulus.of(two.pow(100).add(BigInteger.ONE)));
+
+        assertNull(LongModulus.of(BigInteger.ZERO));
+        assertNull(LongModulus.of(BigInteger.ONE.negate()));
+        assertNull(LongModulus.of(null));
+    }
+
+    @Test
+    void keysAboveALongUseBigInteger() {
+
+        BigInteger big = BigInteger.ONE.shiftLeft(63).add(BigInteger.valueOf(29));
+        BigInteger small = BigInteger.valueOf(Long.MAX_VALUE - 24);
+
+        assertNull(new RSAKey(big, big, BigInteger.ONE, big, BigInteger.ONE).getNModulus());
+        assertNotNull(new RSAKey(small, small, BigInteger.ONE, small, BigInteger.ONE).getNModulus());
+
+        // n = p*q above 63 bits, so the blocks are encrypted with modPow
+        BigInteger p = BigInteger.valueOf(4294967311L), q = BigInteger.valueOf(4294967357L);
+        BigInteger n = p.multiply(q), e = BigInteger.valueOf(65537);
+        BigInteger d = e.modInverse(p.subtract(BigInteger.ONE).multiply(q.subtract(BigInteger.ONE)));
+
+        RSA rsa = new RSA(new RSAKey(p, q, d, n, e));
+
+        assertEquals(BigInteger.valueOf(1214).modPow(e, n).toString() + "\n", rsa.encrypt("MO"));
+        assertEquals("MO\n", rsa.decrypt(rsa.encrypt("MO")));
+    }
+
+    private static void assertMultiply(LongModulus modulus, long a, long b) {
+        assertEquals(expectedMultiply(a, b, modulus.getModulus()), modulus.multiply(a, b),
+                a + " * " + b + " (mod " + modulus.getModulus() + ")");
+    }
+
+    private static void assertPow(LongModulus modulus, long base, long exponent) {
+
+        BigInteger m = BigInteger.valueOf(modulus.getModulus());
+
+        assertEquals(BigInteger.valueOf(base).modPow(BigInteger.valueOf(exponent), m).longValue(),
+                modulus.pow(base, exponent), base + "^" + exponent + " (mod " + m + ")");
+    }
+
+    private static void assertPow(LongModulus modulus, long base, BigInteger exponent) {
+
+        BigInteger m = BigInteger.valueOf(modulus.getModulus());
+
+        assertEquals(BigInteger.valueOf(base).modPow(exponent, m).longValue(),
+                modulus.pow(base, exponent), base + "^" + exponent + " (mod " + m + ")");
+    }
+
+    private static long expectedMultiply(long a, long b, long m) {
+        return BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)).mod(BigInteger.valueOf(m)).longValue();
+    }
+
+    /**
+     * Get the pairs of numbers at the edges of the modulo.
+     * @param m the modulo
+     * @return the pairs of numbers from 0 to m - 1
+     */
+    private static long[][] edgePairs(long m) {
+
+        long half = m / 2;
+
+        return new long[][] {{0, 0}, {0, m - 1}, {1 % m, m - 1}, {m - 1, m - 1}, {half, half},
+                             {half, m - 1}, {m - 2 < 0 ? 0 : m - 2, m - 1}};
+    }
+
+    /**
+     * Get a random number below the modulo.
+     * @param random the random numbers
+     * @param m the modulo
+     * @return a random number from 0 to m - 1
+     */
+    private static long random(Random random, long m) {
+        return Math.floorMod(random.nextLong(), m);
+    }
+}
@@ -0,0 +1,95 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.math.BigInteger;
+import java.util.concurrent.CancellationException;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of PrimeSearch and the parallel search of Prime.getPrime().
+ *
+ * @author Su Khai Koh
+ */
+class PrimeSearchTest {
+
+    // Longest time for the threads of a stopped search to finish
+    private static final long IDLE_TIMEOUT = 5000;
+
+    @Test
+    void findsAPrimeWithinTheRange() throws InterruptedException {
+
+        long low = 1L << 40, high = (1L << 40) + (1L << 20);
+
+        for (int i = 0; i < 20; i++) {
+
+            BigInteger p = PrimeSearch.start(low, high, 4).get();
+
+            assertTrue(p.isProbablePrime(50), p + " is not a prime");
+            assertTrue(p.longValue() >= low && p.longValue() <= high, p + " is out of range");
+        }
+    }
+
+    @Test
+    void rangeWithoutPrimeHasNoResult() throws InterruptedException {
+        assertNull(PrimeSearch.start(24, 28, 4).get());
+        assertNull(PrimeSearch.start(10, 5, 4).get());
+    }
+
+    @Test
+    void cancelStopsTheThreads() throws InterruptedException {
+
+        PrimeSearch search = PrimeSearch.start(2, Long.MAX_VALUE);
+
+        boolean cancelled = search.cancel(true);
+
+        assertTrue(search.isDone());
+        assertEquals(cancelled, search.isCancelled());
+
+        if (cancelled)
+            assertThrows(CancellationException.class, search::get);
+        else
+            assertTrue(search.get().isProbablePrime(50));
+
+        // A finished search cannot be cancelled
+        assertFalse(search.cancel(true));
+
+        awaitIdle();
+    }
+
+    @Test
+    void interruptedGetPrimeCancelsTheSearch() throws InterruptedException {
+
+        // The range is only searched in parallel with more than one thread
+        assumeTrue(PrimeSearch.MAX_THREADS > 1);
+
+        Thread.currentThread().interrupt();
+
+        try {
+            assertThrows(CancellationException.class, () -> Prime.getPrime(1L << 40, 1L << 62));
+        } finally {
+            // The interrupt is kept for the caller, clear it for the next test
+            assertTrue(Thread.interrupted());
+        }
+
+        awaitIdle();
+    }
+
+    /**
+     * Wait for all the threads of the prime search pool to finish.
+     * @throws InterruptedException if the test was interrupted
+     */
+    private static void awaitIdle() throws InterruptedException {
+
+        long deadline = System.currentTimeMillis() + IDLE_TIMEOUT;
+
+        while (PrimeSearch.getActiveWorkers() > 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+
+        assertEquals(0, PrimeSearch.getActiveWorkers());
+    }
+}
@@ -0,0 +1,188 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the segmented sieve and the deterministic Miller-Rabin test of
+ * Prime, against BigInteger.isProbablePrime().
+ *
+ * @author Su Khai Koh
+ */
+class PrimeTest {
+
+    // Certainty of BigInteger.isProbablePrime() for the expected results
+    private static final int CERTAINTY = 50;
+
+    @Test
+    void smallNumbers() {
+        for (long n = -10; n <= 200000; n++)
+            assertEquals(isProbablePrime(n), Prime.isPrime(n), "isPrime(" + n + ")");
+    }
+
+    @Test
+    void numbersAroundPowersOfTwo() {
+
+        for (int bits : new int[] {31, 32, 62, 63}) {
+
+            long center = bits == 63 ? Long.MAX_VALUE - 2000 : 1L << bits;
+
+            for (long n = center - 2000; n <= center + 2000 && n > 0; n++)
+                assertEquals(isProbablePrime(n), Prime.isPrime(n), "isPrime(" + n + ")");
+        }
+    }
+
+    @Test
+    void randomNumbers() {
+
+        Random random = new Random(1);
+
+        for (int i = 0; i < 100000; i++) {
+            long n = random.nextLong() >>> (1 + random.nextInt(63));
+            assertEquals(isProbablePrime(n), Prime.isPrime(n), "isPrime(" + n + ")");
+        }
+    }
+
+    @Test
+    void strongPseudoprimes() {
+
+        // Carmichael numbers, and strong pseudoprimes to the first bases
+        long[] composites = {561, 41041, 2047, 1373653, 25326001, 3215031751L,
+                             2152302898747L, 3474749660383L, 341550071728321L,
+                             3825123056546413051L,
+                             // Squares of primes next to 2^31 and 2^32
+                             2147483647L * 2147483647L, 4294967291L * 4294967291L,
+                             4294967291L * 2147483647L};
+
+        for (long n : composites)
+            assertFalse(Prime.isPrime(n), n + " is not a prime");
+
+        assertTrue(Prime.isPrime(2147483647));
+        assertTrue(Prime.isPrime(4294967291L));
+        assertTrue(Prime.isPrime(Long.MAX_VALUE - 24));
+        assertFalse(Prime.isPrime(Long.MAX_VALUE));
+    }
+
+    @Test
+    void nextPrimeIsTheSmallestPrimeInTheRange() {
+
+        Random random = new Random(2);
+
+        for (int bits = 2; bits <= 63; bits++) {
+            for (int i = 0; i < 20; i++) {
+
+                long from = random.nextLong() >>> (64 - bits);
+                long to = from + random.nextInt(3 * Prime.SEGMENT_SIZE);
+
+                if (to < from)
+                    to = Long.MAX_VALUE;
+
+                assertEquals(expectedNextPrime(from, to), Prime.nextPrime(from, to),
+                        "nextPrime(" + from + ", " + to + ")");
+            }
+        }
+    }
+
+    @Test
+    void nextPrimeAroundTheEndOfASegment() {
+
+        // 32771 is the first prime after the first segment
+        assertEquals(32771, Prime.nextPrime(32750, 40000));
+        assertEquals(32771, Prime.nextPrime(32768, 32771));
+        assertEquals(-1, Prime.nextPrime(32750, 32770));
+
+        long from = (1L << 31) - Prime.SEGMENT_SIZE + 1;
+        assertEquals(expectedNextPrime(from, 1L << 32), Prime.nextPrime(from, 1L << 32));
+    }
+
+    @Test
+    void nextPrimeAtTheEndOfTheLongRange() {
+
+        long largest = Long.MAX_VALUE - 24;
+
+        long from = Long.MAX_VALUE - 1000;
+
+        assertEquals(expectedNextPrime(from, Long.MAX_VALUE), Prime.nextPrime(from, Long.MAX_VALUE));
+        assertEquals(largest, Prime.nextPrime(largest - 20, Long.MAX_VALUE));
+        assertEquals(largest, Prime.nextPrime(largest, largest));
+        assertEquals(-1, Prime.nextPrime(largest + 1, Long.MAX_VALUE));
+    }
+
+    @Test
+    void nextPrimeWithoutPrime() {
+        assertEquals(-1, Prime.nextPrime(24, 28));
+        assertEquals(-1, Prime.nextPrime(10, 5));
+        assertEquals(-1, Prime.nextPrime(-5, 1));
+        assertEquals(2, Prime.nextPrime(-5, 2));
+    }
+
+    @Test
+    void getPrimeStaysInTheRange() {
+
+        long[][] ranges = {{0, 2}, {2, 3}, {14, 17}, {1L << 31, (1L << 31) + 100},
+                           {1L << 62, (1L << 62) + 1000}, {Long.MAX_VALUE - 100, Long.MAX_VALUE},
+                           {1, 1L << 40}};
+
+        for (long[] range : ranges) {
+            for (int i = 0; i < 20; i++) {
+
+                long p = Prime.getPrime(range[0], range[1]).longValue();
+
+                assertTrue(p >= range[0] && p <= range[1], p + " is out of " + range[0] + ".." + range[1]);
+                assertTrue(isProbablePrime(p), p + " is not a prime");
+            }
+        }
+
+        assertEquals(BigInteger.valueOf(2), Prime.getPrime(-10, 2));
+    }
+
+    @Test
+    void getPrimeWithoutPrime() {
+
+        for (long[] range : new long[][] {{24, 28}, {10, 5}, {-10, 1}, {32762, 32770}}) {
+
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                    () -> Prime.getPrime(range[0], range[1]));
+
+            assertEquals(Prime.NO_PRIME, e.getMessage());
+            assertNull(Prime.findPrime(range[0], range[1]));
+        }
+    }
+
+    @Test
+    void randomStartIsInTheRange() {
+
+        for (long[] range : new long[][] {{5, 5}, {2, 3}, {2, Long.MAX_VALUE}, {Long.MAX_VALUE - 1, Long.MAX_VALUE}}) {
+            for (int i = 0; i < 100; i++) {
+
+                long start = Prime.randomStart(range[0], range[1]);
+
+                assertTrue(start >= range[0] && start <= range[1]);
+            }
+        }
+    }
+
+    /**
+     * Find the smallest prime within the range, with BigInteger.
+     * @param from the lowest possible prime number
+     * @param to the highest possible prime number
+     * @return the smallest prime, or -1 if there is none
+     */
+    private static long expectedNextPrime(long from, long to) {
+
+        BigInteger start = BigInteger.valueOf(Math.max(from, 2) - 1);
+        BigInteger prime = start.nextProbablePrime();
+
+        return prime.compareTo(BigInteger.valueOf(to)) <= 0 ? prime.longValue() : -1;
+    }
+
+    private static boolean isProbablePrime(long n) {
+        return n >= 2 && BigInteger.valueOf(n).isProbablePrime(CERTAINTY);
+    }
+}
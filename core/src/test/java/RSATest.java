@@ -0,0 +1,196 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the decryption of RSA with the Chinese Remainder Theorem, which
+ * has to give the same numbers as c^d (mod n).
+ *
+ * @author Su Khai Koh
+ */
+class RSATest {
+
+    @Test
+    void crtOnLongs() {
+
+        Random random = new Random(1);
+
+        // n fits in a long
+        for (int bits = 8; bits <= 31; bits++)
+            checkRandomKeys(random, bits, 50);
+    }
+
+    @Test
+    void crtWhereOnlyThePrimesFitInALong() {
+
+        Random random = new Random(2);
+
+        // p and q fit in a long, but not n = p*q
+        for (int bits = 32; bits <= 62; bits += 5)
+            checkRandomKeys(random, bits, 50);
+    }
+
+    @Test
+    void crtOnBigIntegers() {
+        checkRandomKeys(new Random(3), 100, 50);
+        checkRandomKeys(new Random(4), 512, 10);
+    }
+
+    @Test
+    void primeTwo() {
+
+        BigInteger two = BigInteger.valueOf(2);
+
+        for (long q : new long[] {3, 5, 101, 4294967311L, 4611686018427388039L}) {
+
+            RSAKey key = key(two, BigInteger.valueOf(q), BigInteger.valueOf(7));
+
+            assertTrue(key.getDecryption().useCRT);
+
+            // d mod (2-1) is always zero
+            checkAllBlocks(key, new Random(q), 200);
+        }
+    }
+
+    @Test
+    void exponentThatIsAMultipleOfBothPrimesMinusOne() {
+
+        // d mod (p-1) = d mod (q-1) = 0, so a block which is a multiple of
+        // p or q has to decrypt to a multiple of it, not to one
+        RSAKey key = key(BigInteger.valueOf(7), BigInteger.valueOf(11), BigInteger.valueOf(30));
+
+        assertTrue(key.getDecryption().useCRT);
+
+        for (int c = 0; c < 77; c++)
+            assertDecrypts(key, BigInteger.valueOf(c));
+    }
+
+    @Test
+    void samePrimesDoNotUseCrt() {
+
+        BigInteger p = BigInteger.valueOf(101);
+        RSAKey key = key(p, p, BigInteger.valueOf(1234));
+
+        assertFalse(key.getDecryption().useCRT);
+
+        for (int c = 0; c < 101 * 101; c += 7)
+            assertDecrypts(key, BigInteger.valueOf(c));
+
+        BigInteger big = BigInteger.probablePrime(80, new Random(5));
+        RSAKey bigKey = key(big, big, BigInteger.valueOf(65537));
+
+        assertFalse(bigKey.getDecryption().useCRT);
+        checkAllBlocks(bigKey, new Random(6), 20);
+    }
+
+    @Test
+    void keysThatDoNotMatchNDoNotUseCrt() {
+
+        RSAKey key = new RSAKey(BigInteger.valueOf(7), BigInteger.valueOf(11), BigInteger.valueOf(13),
+                                BigInteger.valueOf(79), BigInteger.valueOf(37));
+
+        assertFalse(key.getDecryption().useCRT);
+
+        for (int c = 0; c < 79; c++)
+            assertDecrypts(key, BigInteger.valueOf(c));
+    }
+
+    @Test
+    void encryptedMessageRoundTrip() {
+
+        BigInteger p = BigInteger.valueOf(1000003), q = BigInteger.valueOf(999983);
+        BigInteger e = BigInteger.valueOf(65537);
+        BigInteger d = e.modInverse(p.subtract(BigInteger.ONE).multiply(q.subtract(BigInteger.ONE)));
+
+        RSA rsa = new RSA(new RSAKey(p, q, d, p.multiply(q), e));
+        String message = "THEQUICKBROWNFOXJUMPSOVERTHELAZYDOGS";
+
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < message.length(); i += 2)
+            expected.append(message, i, i + 2).append('\n');
+
+        assertEquals(expected.toString(), rsa.decrypt(rsa.encrypt(message)));
+    }
+
+    @Test
+    void keysAreGeneratedForTheGivenMaximumValue() {
+
+        for (int i = 0; i < 20; i++) {
+
+            RSA rsa = new RSA("100");
+
+            assertEquals("100", rsa.getMaxValue());
+            assertTrue(new BigInteger(rsa.getP()).compareTo(BigInteger.valueOf(100)) <= 0);
+            assertTrue(new BigInteger(rsa.getQ()).compareTo(BigInteger.valueOf(100)) <= 0);
+        }
+    }
+
+    /**
+     * Check the decryption with random primes of the given size.
+     * @param random the random numbers
+     * @param bits the bit length of p and q
+     * @param count the number of blocks to check with each key
+     */
+    private static void checkRandomKeys(Random random, int bits, int count) {
+
+        for (int i = 0; i < 5; i++) {
+
+            BigInteger p = BigInteger.probablePrime(bits, random);
+            BigInteger q = BigInteger.probablePrime(bits, random);
+
+            if (p.equals(q))
+                continue;
+
+            BigInteger n = p.multiply(q);
+            BigInteger d = new BigInteger(n.bitLength() - 1, random).add(BigInteger.ONE);
+
+            RSAKey key = key(p, q, d);
+
+            assertTrue(key.getDecryption().useCRT);
+
+            checkAllBlocks(key, random, count);
+        }
+    }
+
+    /**
+     * Check the decryption of random blocks, and of the blocks next to p, q
+     * and n.
+     * @param key the keys
+     * @param random the random numbers
+     * @param count the number of random blocks
+     */
+    private static void checkAllBlocks(RSAKey key, Random random, int count) {
+
+        BigInteger n = key.getN();
+
+        for (BigInteger c : new BigInteger[] {BigInteger.ZERO, BigInteger.ONE, key.getP(), key.getQ(),
+                                              key.getP().subtract(BigInteger.ONE),
+                                              n.subtract(BigInteger.ONE)})
+            assertDecrypts(key, c);
+
+        for (int i = 0; i < count; i++)
+            assertDecrypts(key, new BigInteger(n.bitLength() + 8, random).mod(n));
+    }
+
+    private static void assertDecrypts(RSAKey key, BigInteger c) {
+        assertEquals(c.modPow(key.getD(), key.getN()), RSA.decryptNumber(key, c),
+                "Decryption of " + c + " with p=" + key.getP() + " q=" + key.getQ() +
+                " d=" + key.getD());
+    }
+
+    /**
+     * Create the keys for decryption. e is not used.
+     * @param p the prime number p
+     * @param q the prime number q
+     * @param d the exponent of the decryption
+     * @return the keys
+     */
+    private static RSAKey key(BigInteger p, BigInteger q, BigInteger d) {
+        return new RSAKey(p, q, d, p.multiply(q), BigInteger.ONE);
+    }
+}
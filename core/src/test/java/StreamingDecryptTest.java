@@ -0,0 +1,140 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that the streaming decryption of a cipher text in text form gives
+ * the same message and the same errors as decrypt(String).
+ *
+ * @author Su Khai Koh
+ */
+class StreamingDecryptTest {
+
+    private static final String[] CIPHER_TEXTS = {
+        "", "   ", "\n\n", ",", "12", "12 34", "12 34 56", "12, 34\n56, 78\n",
+        "12 ab 34", "12 ab", "ab 12 34 56", "12 34 5x", "12 34 5x 78 90",
+        "(12, 34)\n(56, 78)", "12,,34", "12 34,\n"
+    };
+
+    @Test
+    void sameResultsAsDecryptingAString() throws IOException {
+
+        BigInteger p = BigInteger.valueOf(1000003), q = BigInteger.valueOf(999983);
+        BigInteger e = BigInteger.valueOf(65537);
+        BigInteger d = e.modInverse(p.subtract(BigInteger.ONE).multiply(q.subtract(BigInteger.ONE)));
+
+        BigInteger a = BigInteger.valueOf(1234), g = BigInteger.valueOf(2);
+
+        // One number in each block, and two
+        Algorithm[] algorithms = {new RSA(new RSAKey(p, q, d, p.multiply(q), e)),
+                                  new ElGamal(new ElGamalKey(a, BigInteger.TEN, p, g, g.modPow(a, p)))};
+
+        for (Algorithm algorithm : algorithms) {
+            for (String cipherText : CIPHER_TEXTS) {
+
+                String expected = algorithm.decrypt(cipherText);
+
+                assertEquals(expected, decryptReader(algorithm, cipherText, 8192), "\"" + cipherText + "\"");
+                assertEquals(expected, decryptReader(algorithm, cipherText, 1), "\"" + cipherText + "\"");
+                assertEquals(expected, decryptBuffers(algorithm, cipherText), "\"" + cipherText + "\"");
+            }
+        }
+    }
+
+    @Test
+    void countBlocks() {
+
+        RSA rsa = new RSA(new RSAKey(BigInteger.ONE, BigInteger.ONE, BigInteger.ONE,
+                                     BigInteger.TEN, BigInteger.ONE));
+        Knapsack knapsack = new Knapsack(new KnapsackKey(BigInteger.TEN, BigInteger.ONE,
+                                                         new BigInteger[] {BigInteger.ONE},
+                                                         new BigInteger[] {BigInteger.ONE}));
+
+        // Two letters in each block of RSA, one in Knapsack
+        assertEquals(3, rsa.countBlocks("HELLO", true));
+        assertEquals(5, knapsack.countBlocks("H-E L\nLO!", true));
+        assertEquals(0, rsa.countBlocks("", true));
+
+        // One number in each block of RSA, two in ElGamal
+        ElGamal elGamal = new ElGamal(new ElGamalKey(BigInteger.ONE, null, BigInteger.TEN,
+                                                     BigInteger.ONE, BigInteger.ONE));
+
+        assertEquals(3, rsa.countBlocks("12, 34\n56", false));
+        assertEquals(2, elGamal.countBlocks("(12, 34)\n(56, 78)\n", false));
+    }
+
+    /**
+     * Decrypt through a reader that gives a few characters at a time.
+     * @param algorithm the algorithm
+     * @param cipherText the cipher text
+     * @param chunk the number of characters given at once
+     * @return the message, or the error message of the decryption
+     * @throws IOException if the message cannot be written
+     */
+    private static String decryptReader(Algorithm algorithm, final String cipherText, final int chunk)
+            throws IOException {
+
+        Reader reader = new Reader() {
+
+            private int position;
+
+            public int read(char[] buffer, int offset, int length) {
+
+                if (position >= cipherText.length())
+                    return -1;
+
+                int count = Math.min(Math.min(length, chunk), cipherText.length() - position);
+
+                cipherText.getChars(position, position + count, buffer, offset);
+                position += count;
+
+                return count;
+            }
+
+            public void close() {
+            }
+        };
+
+        StringWriter out = new StringWriter();
+
+        try {
+            algorithm.decrypt(reader, out);
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+
+        return out.toString();
+    }
+
+    /**
+     * Decrypt through the decryptor of the text form, one character at a
+     * time.
+     * @param algorithm the algorithm
+     * @param cipherText the cipher text
+     * @return the message, or the error message of the decryption
+     * @throws IOException if the message cannot be written
+     */
+    private static String decryptBuffers(Algorithm algorithm, String cipherText) throws IOException {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BufferCipher decryptor = algorithm.decryptor(out, false);
+
+        try {
+            for (byte b : CipherCodec.toArray(CipherCodec.toBytes(cipherText)))
+                decryptor.update(ByteBuffer.wrap(new byte[] {b}));
+
+            decryptor.finish();
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+
+        return CipherCodec.toText(ByteBuffer.wrap(out.toByteArray()));
+    }
+}
@@ -1,3 +1,10 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+
 /**
  * An interface for all the algorithm in this cryptography system.
  * 
@@ -21,5 +28,106 @@ public interface Algorithm {
      */
     public String decrypt(String cipherText);
     
+    /**
+     * A method that encrypt a message in bytes. The message can only contain
+     * ASCII alphabetic letters and the cipher text will be in a compact 
+     * binary form.
+     * @param message the message to be encrypted
+     * @return cipher text in binary form
+     */
+    public byte[] encrypt(byte[] message);
+    
+    /**
+     * A method that decrypt a cipher text in binary form. The message will be
+     * in ASCII alphabetic letters.
+     * @param cipherText the cipher text to be decrypted
+     * @return message in bytes
+     */
+    public byte[] decrypt(byte[] cipherText);
+    
+    /**
+     * A method that encrypt the remaining bytes of a message. The message can
+     * only contain ASCII alphabetic letters and the cipher text will be in a
+     * compact binary form.
+     * @param message the message to be encrypted
+     * @return cipher text in binary form
+     */
+    public ByteBuffer encrypt(ByteBuffer message);
+    
+    /**
+     * A method that decrypt the remaining bytes of a cipher text in binary 
+     * form. The message will be in ASCII alphabetic letters.
+     * @param cipherText the cipher text to be decrypted
+     * @return message in bytes
+     */
+    public ByteBuffer decrypt(ByteBuffer cipherText);
+    
+    /**
+     * A method that encrypt a message from a reader and write the cipher 
+     * text to a writer block by block, so the whole message is never held in
+     * memory. The message can only contain alphabetic characters.
+     * @param message the message to be encrypted
+     * @param cipherText the writer of the cipher text
+     * @throws IOException if the reader or the writer fails
+     */
+    public void encrypt(Reader message, Writer cipherText) throws IOException;
+    
+    /**
+     * A method that decrypt a cipher text from a reader and write the message
+     * to a writer block by block. The cipher text should only contain 
+     * numeric characters.
+     * @param cipherText the cipher text to be decrypted
+     * @param message the writer of the message
+     * @throws IOException if the reader or the writer fails
+     */
+    public void decrypt(Reader cipherText, Writer message) throws IOException;
+    
+    /**
+     * A method that encrypt a message from an input stream of ASCII letters
+     * and write the cipher text in binary form to an output stream.
+     * @param message the message to be encrypted
+     * @param cipherText the output stream of the cipher text
+     * @throws IOException if either stream fails
+     */
+    public void encrypt(InputStream message, OutputStream cipherText) throws IOException;
+    
+    /**
+     * A method that decrypt a cipher text in binary form from an input 
+     * stream and write the message in ASCII letters to an output stream.
+     * @param cipherText the cipher text to be decrypted
+     * @param message the output stream of the message
+     * @throws IOException if either stream fails
+     */
+    public void decrypt(InputStream cipherText, OutputStream message) throws IOException;
+    
+    /**
+     * A method that starts an encryption of a message that is given in 
+     * pieces of ASCII letters, such as the mapped regions of a file, and 
+     * writes the cipher text to an output stream.
+     * @param cipherText the output stream of the cipher text
+     * @param binary true to write the cipher text in binary form, false to
+     *        write it in text form
+     * @return the encryption to give the pieces of the message to
+     */
+    public BufferCipher encryptor(OutputStream cipherText, boolean binary);
+    
+    /**
+     * A method that starts a decryption of a cipher text that is given in 
+     * pieces, and writes the message in ASCII letters to an output stream.
+     * @param message the output stream of the message
+     * @param binary true if the cipher text is in binary form, false if it
+     *        is in text form
+     * @return the decryption to give the pieces of the cipher text to
+     */
+    public BufferCipher decryptor(OutputStream message, boolean binary);
     
-}
+    /**
+     * A method that counts the blocks of a message or of a cipher text in
+     * text form, without encrypting or decrypting it.
+     * @param text the message or the cipher text
+     * @param message true if the text is a message, false if it is a cipher
+     *        text
+     * @return the number of blocks
+     */
+    public int countBlocks(String text, boolean message);
+}
\ No newline at end of file
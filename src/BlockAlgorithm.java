@@ -0,0 +1,1307 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A base class for the algorithms that encrypt a message block by block.
+ * Each block of the message has either one or two alphabetic letters, and
+ * each block of the cipher text has one or more numbers. This class handles
+ * the conversion between the text, the bytes and the blocks, so that each
+ * algorithm only needs to encrypt and decrypt a single block.
+ *
+ * In bytes, the message is in ASCII letters, and the cipher text is in the
+ * binary form of CipherCodec. The decrypted message has the letters of each
+ * block followed by a new line, which is the same as the text form.
+ *
+ * The keys are kept in an immutable key object of type K. Every method can
+ * be given the key to use, or uses the current key of the algorithm
+ * otherwise. Encryption and decryption only read the key they were given,
+ * so one algorithm and one key can be used by many threads at the same
+ * time, and changing the keys does not affect the work that has started.
+ *
+ * @param <K> the type of the keys
+ * @author Su Khai Koh
+ */
+public abstract class BlockAlgorithm<K> implements Algorithm {
+
+    public static final String INVALID_MESSAGE =
+            "Invalid message input.\n"+
+            "Message must contains only alphabetic letters.";
+
+    public static final String INVALID_CIPHER_TEXT =
+            "Invalid cipher text input.\n"+
+            "Cipher text must contains only numeric letters.";
+
+    public static final String INVALID_FORMAT =
+            "Invalid cipher text format.\n"+
+            "Format must be:\n"+
+            "    (1234, 5678)";
+
+    // Number of characters read from a stream at once
+    private static final int BUFFER_SIZE = 8192;
+
+    // Number of blocks from which a message is encrypted in parallel
+    public static final int PARALLEL_THRESHOLD = 4096;
+
+    // Number of blocks encrypted by each parallel task
+    private static final int PARALLEL_CHUNK_SIZE = 1024;
+
+    // Number of blocks from which a cipher text is decrypted in parallel
+    public static final int PARALLEL_DECRYPT_THRESHOLD = 256;
+
+    // Number of blocks decrypted by each parallel task
+    private static final int PARALLEL_DECRYPT_CHUNK_SIZE = 64;
+
+    private final int charsPerBlock;    // letters in each message block
+    private final int numbersPerBlock;  // numbers in each cipher text block
+
+    private volatile K key;             // current keys
+
+    // Source of the random numbers, null for the default source
+    private volatile RandomSource randomSource;
+
+    /**
+     * Create an algorithm with the given block sizes.
+     * @param charsPerBlock the number of letters in each message block,
+     *        either 1 or 2. A message with an odd length will be appended
+     *        with an 'X' if it is 2.
+     * @param numbersPerBlock the number of numbers in each cipher text block
+     */
+    protected BlockAlgorithm(int charsPerBlock, int numbersPerBlock) {
+        this.charsPerBlock = charsPerBlock;
+        this.numbersPerBlock = numbersPerBlock;
+    }
+
+    /**
+     * Get the current keys.
+     * @return the current keys
+     */
+    public K getKey() {
+        return key;
+    }
+
+    /**
+     * Replace the current keys. The work that has started keeps the keys it
+     * started with.
+     * @param key the new keys
+     */
+    public void setKey(K key) {
+        this.key = key;
+    }
+
+    /**
+     * Get the source of the random numbers for the keys and the encryption.
+     * @return the source given to this algorithm, or the default source
+     */
+    public RandomSource getRandomSource() {
+
+        RandomSource source = randomSource;
+
+        return source != null ? source : RandomSource.getDefault();
+    }
+
+    /**
+     * Set the source of the random numbers for the keys and the encryption.
+     * The prime numbers always come from the default source, as they are
+     * shared by all the algorithms through the prime pool.
+     * @param randomSource the source, or null for the default source
+     */
+    public void setRandomSource(RandomSource randomSource) {
+        this.randomSource = randomSource;
+    }
+
+    /**
+     * Check that the keys can be used for encryption and decryption.
+     * @param key the keys
+     * @throws IllegalArgumentException if the keys cannot be used
+     */
+    protected void checkKeys(K key) {
+    }
+
+    /**
+     * Prepare the keys before encrypting a message.
+     * @param key the keys
+     */
+    protected void prepareEncrypt(K key) {
+    }
+
+    /**
+     * Prepare the keys before decrypting a cipher text.
+     * @param key the keys
+     */
+    protected void prepareDecrypt(K key) {
+    }
+
+    /**
+     * Check whether the blocks can be encrypted in parallel. This is only
+     * true if encryptBlock() depends on nothing but the keys, and can be
+     * called from many threads at the same time after prepareEncrypt().
+     * @return true if the blocks can be encrypted in parallel
+     */
+    protected boolean isParallelEncrypt() {
+        return false;
+    }
+
+    /**
+     * Check whether the blocks can be decrypted in parallel. This is only
+     * true if decryptBlock() can be called from many threads at the same
+     * time after prepareDecrypt().
+     * @return true if the blocks can be decrypted in parallel
+     */
+    protected boolean isParallelDecrypt() {
+        return false;
+    }
+
+    /**
+     * Encrypt a single block of the message. This may be called from many
+     * threads at the same time, with the same or different keys.
+     * @param key the keys
+     * @param value the value of the block, which is the value of the letter
+     *        for one letter per block, or the number form of the two letters,
+     *        i.e AB --> 0001 --> 1
+     * @param block the cipher text block to be filled in
+     */
+    protected abstract void encryptBlock(K key, int value, BigInteger[] block);
+
+    /**
+     * Decrypt a single block of the cipher text. This may be called from
+     * many threads at the same time, with the same or different keys.
+     * @param key the keys
+     * @param block the cipher text block
+     * @param letters the buffer to be filled in with the letters of the block
+     */
+    protected abstract void decryptBlock(K key, BigInteger[] block, char[] letters);
+
+    /**
+     * Encrypt the given message. This algorithm ONLY encrypts alphabetic
+     * letters, other letters and numbers will be ignored.
+     * @param message the message to be encrypted
+     * @return the cipher text, in the format of "1234\n5678\n" for one number
+     *         per block, or "1234, 5678\n" for two numbers per block
+     */
+    public String encrypt(String message) {
+        return encrypt(key, message);
+    }
+
+    /**
+     * Encrypt the given message with the given keys.
+     * @param key the keys
+     * @param message the message to be encrypted
+     * @return the cipher text, or the error if the message is invalid
+     */
+    public String encrypt(K key, String message) {
+
+        try {
+            return CipherCodec.format(encrypt(key, CipherCodec.toBytes(message)), numbersPerBlock);
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * Decrypt the given cipher text. The cipher text should only contain
+     * numeric characters.
+     * @param cipherText the text to be decoded
+     * @return the original message, with the letters of each block on its
+     *         own line
+     */
+    public String decrypt(String cipherText) {
+        return decrypt(key, cipherText);
+    }
+
+    /**
+     * Decrypt the given cipher text with the given keys.
+     * @param key the keys
+     * @param cipherText the text to be decoded
+     * @return the original message, or the error if the cipher text is
+     *         invalid
+     */
+    public String decrypt(K key, String cipherText) {
+
+        try {
+            checkKeys(key);
+
+            return CipherCodec.toText(decrypt(key, CipherCodec.parse(cipherText, numbersPerBlock)));
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * Encrypt the given message in bytes.
+     * @param message the message in ASCII letters
+     * @return the cipher text in binary form
+     * @throws IllegalArgumentException if the message contains numbers
+     */
+    public byte[] encrypt(byte[] message) {
+        return encrypt(key, message);
+    }
+
+    /**
+     * Encrypt the given message in bytes with the given keys.
+     * @param key the keys
+     * @param message the message in ASCII letters
+     * @return the cipher text in binary form
+     * @throws IllegalArgumentException if the message contains numbers
+     */
+    public byte[] encrypt(K key, byte[] message) {
+        return CipherCodec.toArray(encrypt(key, ByteBuffer.wrap(message)));
+    }
+
+    /**
+     * Decrypt the given cipher text in bytes.
+     * @param cipherText the cipher text in binary form
+     * @return the message in ASCII letters, with a new line after each block
+     * @throws IllegalArgumentException if the cipher text is incomplete
+     */
+    public byte[] decrypt(byte[] cipherText) {
+        return decrypt(key, cipherText);
+    }
+
+    /**
+     * Decrypt the given cipher text in bytes with the given keys.
+     * @param key the keys
+     * @param cipherText the cipher text in binary form
+     * @return the message in ASCII letters, with a new line after each block
+     * @throws IllegalArgumentException if the cipher text is incomplete
+     */
+    public byte[] decrypt(K key, byte[] cipherText) {
+        return CipherCodec.toArray(decrypt(key, ByteBuffer.wrap(cipherText)));
+    }
+
+    /**
+     * Encrypt the remaining bytes of the given message.
+     * @param message the message in ASCII letters
+     * @return the cipher text in binary form
+     * @throws IllegalArgumentException if the message contains numbers
+     */
+    public ByteBuffer encrypt(ByteBuffer message) {
+        return encrypt(key, message);
+    }
+
+    /**
+     * Encrypt the remaining bytes of the given message with the given keys.
+     * @param key the keys
+     * @param message the message in ASCII letters
+     * @return the cipher text in binary form
+     * @throws IllegalArgumentException if the message contains numbers
+     */
+    public ByteBuffer encrypt(K key, ByteBuffer message) {
+
+        checkKeys(key);
+
+        prepareEncrypt(key);
+
+        // A large message, encrypt the blocks in parallel
+        if (isParallelEncrypt() && message.remaining() >= PARALLEL_THRESHOLD * charsPerBlock)
+            return ByteBuffer.wrap(encryptParallel(key, message));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        BlockCollector blocks = new BlockCollector();
+        BigInteger[] block = new BigInteger[numbersPerBlock];
+
+        while (message.hasRemaining()) {
+
+            int value = blocks.add((char) (message.get() & 0xFF));
+
+            if (value >= 0) {
+                encryptBlock(key, value, block);
+                writeBlock(out, block);
+            }
+        }
+
+        int value = blocks.finish();
+
+        if (value >= 0) {
+            encryptBlock(key, value, block);
+            writeBlock(out, block);
+        }
+
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    /**
+     * Decrypt the remaining bytes of the given cipher text.
+     * @param cipherText the cipher text in binary form
+     * @return the message in ASCII letters, with a new line after each block
+     * @throws IllegalArgumentException if the cipher text is incomplete
+     */
+    public ByteBuffer decrypt(ByteBuffer cipherText) {
+        return decrypt(key, cipherText);
+    }
+
+    /**
+     * Decrypt the remaining bytes of the given cipher text with the given
+     * keys.
+     * @param key the keys
+     * @param cipherText the cipher text in binary form
+     * @return the message in ASCII letters, with a new line after each block
+     * @throws IllegalArgumentException if the cipher text is incomplete
+     */
+    public ByteBuffer decrypt(K key, ByteBuffer cipherText) {
+
+        checkKeys(key);
+
+        prepareDecrypt(key);
+
+        // A large cipher text, decrypt the blocks in parallel
+        if (isParallelDecrypt() &&
+                cipherText.remaining() >= PARALLEL_DECRYPT_THRESHOLD * numbersPerBlock)
+            return CipherCodec.toBytes(decryptParallel(key, cipherText));
+
+        StringBuilder out = new StringBuilder();
+
+        BigInteger[] block = new BigInteger[numbersPerBlock];
+        char[] letters = new char[charsPerBlock];
+
+        while (cipherText.hasRemaining()) {
+
+            for (int i = 0; i < numbersPerBlock; i++) {
+
+                if (!cipherText.hasRemaining())
+                    throw new CipherTextException(INVALID_FORMAT, cipherText.position());
+
+                block[i] = CipherCodec.readNumber(cipherText);
+            }
+
+            decryptBlock(key, block, letters);
+            out.append(letters).append('\n');
+        }
+
+        return CipherCodec.toBytes(out.toString());
+    }
+
+    /**
+     * Encrypt the remaining bytes of the given message on the common
+     * ForkJoin pool. The message is split into chunks of blocks, and the
+     * cipher text of the chunks are joined in order, so the result is the
+     * same as encrypting the blocks one by one.
+     * @param key the keys
+     * @param message the message in ASCII letters
+     * @return the cipher text in binary form
+     * @throws IllegalArgumentException if the message contains numbers
+     */
+    private byte[] encryptParallel(K key, ByteBuffer message) {
+
+        // Collect the values of all the blocks first
+        int[] values = new int[message.remaining() / charsPerBlock + 1];
+        int count = 0;
+
+        BlockCollector blocks = new BlockCollector();
+
+        while (message.hasRemaining()) {
+
+            int value = blocks.add((char) (message.get() & 0xFF));
+
+            if (value >= 0)
+                values[count++] = value;
+        }
+
+        int value = blocks.finish();
+
+        if (value >= 0)
+            values[count++] = value;
+
+        byte[][] chunks = new byte[(count + PARALLEL_CHUNK_SIZE - 1) / PARALLEL_CHUNK_SIZE][];
+
+        ForkJoinPool.commonPool().invoke(new EncryptTask(key, values, count, chunks, 0, chunks.length));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        for (byte[] chunk : chunks)
+            out.write(chunk, 0, chunk.length);
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Decrypt the remaining bytes of the given cipher text on the common
+     * ForkJoin pool. The blocks are split into chunks, and the messages of
+     * the chunks are joined in order. If the cipher text is invalid, or a
+     * block cannot be decrypted, the error of the first such block is thrown
+     * as it would be by decrypting the blocks one by one.
+     * @param key the keys
+     * @param cipherText the cipher text in binary form
+     * @return the message, with a new line after each block
+     * @throws IllegalArgumentException if the cipher text is incomplete
+     */
+    private String decryptParallel(K key, ByteBuffer cipherText) {
+
+        // Read all the complete blocks first
+        List<BigInteger[]> blocks = new ArrayList<BigInteger[]>();
+        RuntimeException error = null;
+
+        try {
+            while (cipherText.hasRemaining()) {
+
+                BigInteger[] block = new BigInteger[numbersPerBlock];
+
+                for (int i = 0; i < numbersPerBlock; i++) {
+
+                    if (!cipherText.hasRemaining())
+                        throw new CipherTextException(INVALID_FORMAT, cipherText.position());
+
+                    block[i] = CipherCodec.readNumber(cipherText);
+                }
+
+                blocks.add(block);
+            }
+        } catch (IllegalArgumentException e) {
+            // Thrown after the blocks before it are decrypted
+            error = e;
+        }
+
+        int chunkCount = (blocks.size() + PARALLEL_DECRYPT_CHUNK_SIZE - 1) / PARALLEL_DECRYPT_CHUNK_SIZE;
+
+        String[] chunks = new String[chunkCount];
+        RuntimeException[] errors = new RuntimeException[chunkCount];
+
+        ForkJoinPool.commonPool().invoke(new DecryptTask(key, blocks, chunks, errors, 0, chunkCount));
+
+        StringBuilder out = new StringBuilder();
+
+        for (int i = 0; i < chunkCount; i++) {
+
+            if (errors[i] != null)
+                throw errors[i];
+
+            out.append(chunks[i]);
+        }
+
+        if (error != null)
+            throw error;
+
+        return out.toString();
+    }
+
+    /**
+     * Encrypt a message from the given reader and write the cipher text to
+     * the given writer as the blocks are encrypted, so that a message of any
+     * size can be encrypted in constant memory. The writer is flushed but
+     * not closed.
+     * @param message the message to be encrypted
+     * @param cipherText the writer of the cipher text in text form
+     * @throws IOException if the message cannot be read or the cipher text
+     *         cannot be written
+     * @throws IllegalArgumentException if the message contains numbers, the
+     *         cipher text of the blocks before it has been written already
+     */
+    public void encrypt(Reader message, Writer cipherText) throws IOException {
+        encrypt(key, message, cipherText);
+    }
+
+    /**
+     * Encrypt a message from the given reader with the given keys.
+     * @param key the keys
+     * @param message the message to be encrypted
+     * @param cipherText the writer of the cipher text
+     * @throws IOException if the reader or the writer fails
+     */
+    public void encrypt(K key, Reader message, Writer cipherText) throws IOException {
+
+        prepareKeys(key, true);
+
+        encryptPrepared(key, message, cipherText);
+    }
+
+    /**
+     * Check the keys and prepare them for encryption or decryption, so that
+     * a number of messages with the same keys can be run with
+     * encryptPrepared() and decryptPrepared() without preparing each one.
+     * @param key the keys
+     * @param encrypt true to prepare for encryption, false for decryption
+     * @throws IllegalArgumentException if the keys cannot be used
+     */
+    void prepareKeys(K key, boolean encrypt) {
+
+        checkKeys(key);
+
+        if (encrypt)
+            prepareEncrypt(key);
+        else
+            prepareDecrypt(key);
+    }
+
+    /**
+     * Encrypt a message from the given reader with keys that have been
+     * prepared by prepareKeys().
+     * @param key the keys
+     * @param message the message to be encrypted
+     * @param cipherText the writer of the cipher text
+     * @throws IOException if the reader or the writer fails
+     */
+    void encryptPrepared(K key, Reader message, Writer cipherText) throws IOException {
+
+        char[] buffer = new char[BUFFER_SIZE];
+        StringBuilder out = new StringBuilder();
+
+        BlockCollector blocks = new BlockCollector();
+        BigInteger[] block = new BigInteger[numbersPerBlock];
+
+        int count;
+        while ((count = message.read(buffer)) != -1) {
+
+            for (int i = 0; i < count; i++) {
+
+                int value = blocks.add(buffer[i]);
+
+                if (value >= 0) {
+                    encryptBlock(key, value, block);
+                    appendBlock(out, block);
+                }
+            }
+
+            flush(out, cipherText);
+        }
+
+        int value = blocks.finish();
+
+        if (value >= 0) {
+            encryptBlock(key, value, block);
+            appendBlock(out, block);
+        }
+
+        flush(out, cipherText);
+        cipherText.flush();
+    }
+
+    /**
+     * Encrypt a message from the given input stream and write the cipher text
+     * in binary form to the given output stream as the blocks are encrypted.
+     * The output stream is flushed but not closed.
+     * @param message the message in ASCII letters
+     * @param cipherText the output stream of the cipher text
+     * @throws IOException if the message cannot be read or the cipher text
+     *         cannot be written
+     * @throws IllegalArgumentException if the message contains numbers, the
+     *         cipher text of the blocks before it has been written already
+     */
+    public void encrypt(InputStream message, OutputStream cipherText) throws IOException {
+        encrypt(key, message, cipherText);
+    }
+
+    /**
+     * Encrypt a message from the given input stream with the given keys.
+     * @param key the keys
+     * @param message the message to be encrypted
+     * @param cipherText the output stream of the cipher text
+     * @throws IOException if either stream fails
+     */
+    public void encrypt(K key, InputStream message, OutputStream cipherText) throws IOException {
+
+        BufferCipher encryptor = encryptor(key, cipherText, true);
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        int count;
+        while ((count = message.read(buffer)) != -1)
+            encryptor.update(ByteBuffer.wrap(buffer, 0, count));
+
+        encryptor.finish();
+    }
+
+    /**
+     * Decrypt a cipher text in text form from the given reader and write the
+     * message to the given writer as the blocks are decrypted. The writer is
+     * flushed but not closed.
+     * @param cipherText the cipher text in text form
+     * @param message the writer of the message, with the letters of each
+     *        block on its own line
+     * @throws IOException if the cipher text cannot be read or the message
+     *         cannot be written
+     * @throws IllegalArgumentException if the cipher text is invalid, the
+     *         message of the blocks before it has been written already
+     */
+    public void decrypt(Reader cipherText, Writer message) throws IOException {
+        decrypt(key, cipherText, message);
+    }
+
+    /**
+     * Decrypt a cipher text from the given reader with the given keys.
+     * @param key the keys
+     * @param cipherText the cipher text to be decrypted
+     * @param message the writer of the message
+     * @throws IOException if the reader or the writer fails
+     */
+    public void decrypt(K key, Reader cipherText, Writer message) throws IOException {
+
+        prepareKeys(key, false);
+
+        decryptPrepared(key, cipherText, message);
+    }
+
+    /**
+     * Decrypt a cipher text from the given reader with keys that have been
+     * prepared by prepareKeys().
+     * @param key the keys
+     * @param cipherText the cipher text to be decrypted
+     * @param message the writer of the message
+     * @throws IOException if the reader or the writer fails
+     */
+    void decryptPrepared(K key, Reader cipherText, Writer message) throws IOException {
+
+        char[] buffer = new char[BUFFER_SIZE];
+        StringBuilder out = new StringBuilder();
+
+        NumberCollector numbers = new NumberCollector();
+        char[] letters = new char[charsPerBlock];
+
+        int count;
+        while ((count = cipherText.read(buffer)) != -1) {
+
+            for (int i = 0; i < count; i++) {
+                if (numbers.add(buffer[i])) {
+                    decryptBlock(key, numbers.block, letters);
+                    out.append(letters).append('\n');
+                }
+            }
+
+            flush(out, message);
+        }
+
+        if (numbers.finish()) {
+            decryptBlock(key, numbers.block, letters);
+            out.append(letters).append('\n');
+        }
+
+        flush(out, message);
+        message.flush();
+    }
+
+    /**
+     * Decrypt a cipher text in binary form from the given input stream and
+     * write the message to the given output stream as the blocks are
+     * decrypted. The output stream is flushed but not closed.
+     * @param cipherText the cipher text in binary form
+     * @param message the output stream of the message in ASCII letters,
+     *        with a new line after each block
+     * @throws IOException if the cipher text cannot be read or the message
+     *         cannot be written
+     * @throws IllegalArgumentException if the cipher text is incomplete, the
+     *         message of the blocks before it has been written already
+     */
+    public void decrypt(InputStream cipherText, OutputStream message) throws IOException {
+        decrypt(key, cipherText, message);
+    }
+
+    /**
+     * Decrypt a cipher text from the given input stream with the given keys.
+     * @param key the keys
+     * @param cipherText the cipher text to be decrypted
+     * @param message the output stream of the message
+     * @throws IOException if either stream fails
+     */
+    public void decrypt(K key, InputStream cipherText, OutputStream message) throws IOException {
+
+        BufferCipher decryptor = decryptor(key, message, true);
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        int count;
+        while ((count = cipherText.read(buffer)) != -1)
+            decryptor.update(ByteBuffer.wrap(buffer, 0, count));
+
+        decryptor.finish();
+    }
+
+    /**
+     * Start an encryption of a message that is given in pieces of ASCII
+     * letters, and write the cipher text to the given output stream as the
+     * blocks are encrypted.
+     * @param cipherText the output stream of the cipher text
+     * @param binary true to write the cipher text in binary form, false to
+     *        write it in text form
+     * @return the encryption to give the pieces of the message to
+     */
+    public BufferCipher encryptor(OutputStream cipherText, boolean binary) {
+        return encryptor(key, cipherText, binary);
+    }
+
+    /**
+     * Start an encryption with the given keys.
+     * @param key the keys
+     * @param cipherText the output stream of the cipher text
+     * @param binary true to write the cipher text in binary form
+     * @return the encryption to give the pieces of the message to
+     */
+    public BufferCipher encryptor(K key, OutputStream cipherText, boolean binary) {
+
+        checkKeys(key);
+
+        prepareEncrypt(key);
+
+        return new BufferEncryptor(key, cipherText, binary);
+    }
+
+    /**
+     * Start a decryption of a cipher text that is given in pieces, and write
+     * the message to the given output stream as the blocks are decrypted,
+     * with a new line after each block.
+     * @param message the output stream of the message in ASCII letters
+     * @param binary true if the cipher text is in binary form, false if it
+     *        is in text form
+     * @return the decryption to give the pieces of the cipher text to
+     */
+    public BufferCipher decryptor(OutputStream message, boolean binary) {
+        return decryptor(key, message, binary);
+    }
+
+    /**
+     * Start a decryption with the given keys.
+     * @param key the keys
+     * @param message the output stream of the message
+     * @param binary true if the cipher text is in binary form
+     * @return the decryption to give the pieces of the cipher text to
+     */
+    public BufferCipher decryptor(K key, OutputStream message, boolean binary) {
+
+        checkKeys(key);
+
+        prepareDecrypt(key);
+
+        return new BufferDecryptor(key, message, binary);
+    }
+
+    /**
+     * Count the blocks of a message or a cipher text in text form without
+     * encrypting or decrypting it, i.e to show the progress of a long one.
+     * @param text the message or the cipher text
+     * @param message true if the text is a message, false if it is a cipher
+     *        text
+     * @return the number of blocks, or the number of complete blocks if the
+     *         cipher text has an incomplete block
+     */
+    public int countBlocks(String text, boolean message) {
+
+        if (message) {
+
+            int letters = 0;
+
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'))
+                    letters++;
+            }
+
+            return (letters + charsPerBlock - 1) / charsPerBlock;
+        }
+
+        CipherTokenizer tokens = new CipherTokenizer();
+
+        for (int i = 0; i < text.length(); i++)
+            tokens.add(text.charAt(i));
+
+        tokens.finish();
+
+        return tokens.getCount() / numbersPerBlock;
+    }
+
+    /**
+     * Write a cipher text block in binary form.
+     * @param out the stream to write into
+     * @param block the cipher text block
+     */
+    private static void writeBlock(ByteArrayOutputStream out, BigInteger[] block) {
+        for (BigInteger number : block)
+            CipherCodec.writeNumber(out, number);
+    }
+
+    /**
+     * Append a cipher text block in text form, i.e "1234, 5678\n".
+     * @param out the text to append into
+     * @param block the cipher text block
+     */
+    private static void appendBlock(StringBuilder out, BigInteger[] block) {
+
+        for (int i = 0; i < block.length; i++) {
+
+            if (i > 0)
+                out.append(", ");
+
+            out.append(block[i]);
+        }
+
+        out.append('\n');
+    }
+
+    /**
+     * Write the text collected so far to the given writer and clear it.
+     * @param out the text collected
+     * @param writer the writer to write into
+     * @throws IOException if the text cannot be written
+     */
+    private static void flush(StringBuilder out, Writer writer) throws IOException {
+        writer.append(out);
+        out.setLength(0);
+    }
+
+    /**
+     * A task that encrypts a range of chunks of the block values, by
+     * splitting the range in half until only one chunk is left.
+     */
+    private class EncryptTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final K key;            // keys of the message
+        private final int[] values;     // values of all the blocks
+        private final int count;        // number of blocks
+        private final byte[][] chunks;  // cipher text of each chunk
+        private final int start;        // first chunk of the range
+        private final int end;          // last chunk of the range, exclusive
+
+        EncryptTask(K key, int[] values, int count, byte[][] chunks, int start, int end) {
+            this.key = key;
+            this.values = values;
+            this.count = count;
+            this.chunks = chunks;
+            this.start = start;
+            this.end = end;
+        }
+
+        protected void compute() {
+
+            if (end - start > 1) {
+                int middle = (start + end) >>> 1;
+                invokeAll(new EncryptTask(key, values, count, chunks, start, middle),
+                          new EncryptTask(key, values, count, chunks, middle, end));
+                return;
+            }
+
+            // Only one chunk left, encrypt its blocks
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            BigInteger[] block = new BigInteger[numbersPerBlock];
+
+            int first = start * PARALLEL_CHUNK_SIZE;
+            int last = Math.min(first + PARALLEL_CHUNK_SIZE, count);
+
+            for (int i = first; i < last; i++) {
+                encryptBlock(key, values[i], block);
+                writeBlock(out, block);
+            }
+
+            chunks[start] = out.toByteArray();
+        }
+    }
+
+    /**
+     * A task that decrypts a range of chunks of the cipher text blocks, by
+     * splitting the range in half until only one chunk is left. The error
+     * of a chunk is kept instead of thrown, so that the first error can be
+     * found in order.
+     */
+    private class DecryptTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final K key;                        // keys of the cipher text
+        private final List<BigInteger[]> blocks;    // all the blocks
+        private final String[] chunks;              // message of each chunk
+        private final RuntimeException[] errors;    // error of each chunk
+        private final int start;        // first chunk of the range
+        private final int end;          // last chunk of the range, exclusive
+
+        DecryptTask(K key, List<BigInteger[]> blocks, String[] chunks, RuntimeException[] errors,
+                    int start, int end) {
+            this.key = key;
+            this.blocks = blocks;
+            this.chunks = chunks;
+            this.errors = errors;
+            this.start = start;
+            this.end = end;
+        }
+
+        protected void compute() {
+
+            if (end - start > 1) {
+                int middle = (start + end) >>> 1;
+                invokeAll(new DecryptTask(key, blocks, chunks, errors, start, middle),
+                          new DecryptTask(key, blocks, chunks, errors, middle, end));
+                return;
+            }
+
+            // Only one chunk left, decrypt its blocks
+            StringBuilder out = new StringBuilder();
+            char[] letters = new char[charsPerBlock];
+
+            int first = start * PARALLEL_DECRYPT_CHUNK_SIZE;
+            int last = Math.min(first + PARALLEL_DECRYPT_CHUNK_SIZE, blocks.size());
+
+            try {
+                for (int i = first; i < last; i++) {
+                    decryptBlock(key, blocks.get(i), letters);
+                    out.append(letters).append('\n');
+                }
+            } catch (RuntimeException e) {
+                errors[start] = e;
+            }
+
+            chunks[start] = out.toString();
+        }
+    }
+
+    /**
+     * An encryption of a message given in pieces. The letters of a block
+     * that is split between two pieces are kept by the block collector.
+     */
+    private class BufferEncryptor implements BufferCipher {
+
+        private final K key;
+        private final OutputStream cipherText;
+        private final boolean binary;
+
+        private final BlockCollector blocks = new BlockCollector();
+        private final BigInteger[] block = new BigInteger[numbersPerBlock];
+
+        // Cipher text that has not been written yet
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final StringBuilder text = new StringBuilder();
+
+        BufferEncryptor(K key, OutputStream cipherText, boolean binary) {
+            this.key = key;
+            this.cipherText = cipherText;
+            this.binary = binary;
+        }
+
+        public void update(ByteBuffer message) throws IOException {
+
+            while (message.hasRemaining()) {
+
+                int value = blocks.add((char) (message.get() & 0xFF));
+
+                if (value >= 0)
+                    encrypt(value);
+            }
+
+            write();
+        }
+
+        public void finish() throws IOException {
+
+            int value = blocks.finish();
+
+            if (value >= 0)
+                encrypt(value);
+
+            write();
+            cipherText.flush();
+        }
+
+        /**
+         * Encrypt a block, and write the cipher text so far if there is
+         * enough of it.
+         * @param value the value of the block
+         * @throws IOException if the cipher text cannot be written
+         */
+        private void encrypt(int value) throws IOException {
+
+            encryptBlock(key, value, block);
+
+            if (binary)
+                writeBlock(bytes, block);
+            else
+                appendBlock(text, block);
+
+            if (bytes.size() + text.length() >= BUFFER_SIZE)
+                write();
+        }
+
+        /**
+         * Write the cipher text that has not been written yet.
+         * @throws IOException if the cipher text cannot be written
+         */
+        private void write() throws IOException {
+
+            if (binary) {
+                bytes.writeTo(cipherText);
+                bytes.reset();
+            } else {
+                cipherText.write(CipherCodec.toArray(CipherCodec.toBytes(text.toString())));
+                text.setLength(0);
+            }
+        }
+    }
+
+    /**
+     * A decryption of a cipher text given in pieces. In text form, a token
+     * that is split between two pieces is kept by the tokenizer. In binary
+     * form, the bytes of a number that is split are kept until the number
+     * ends in the next piece.
+     */
+    private class BufferDecryptor implements BufferCipher {
+
+        private final K key;
+        private final OutputStream message;
+        private final boolean binary;
+
+        // Numbers of a cipher text in text form
+        private final NumberCollector numbers = new NumberCollector();
+
+        // Bytes of a number that continues in the next piece
+        private final ByteArrayOutputStream partial = new ByteArrayOutputStream();
+
+        private final BigInteger[] block = new BigInteger[numbersPerBlock];
+        private final char[] letters = new char[charsPerBlock];
+        private int count;      // numbers in the current binary block so far
+
+        // Message that has not been written yet
+        private final StringBuilder out = new StringBuilder();
+
+        BufferDecryptor(K key, OutputStream message, boolean binary) {
+            this.key = key;
+            this.message = message;
+            this.binary = binary;
+        }
+
+        public void update(ByteBuffer cipherText) throws IOException {
+
+            if (binary)
+                readNumbers(cipherText);
+            else
+                while (cipherText.hasRemaining())
+                    if (numbers.add((char) (cipherText.get() & 0xFF)))
+                        decrypt(numbers.block);
+
+            write();
+        }
+
+        public void finish() throws IOException {
+
+            if (binary && partial.size() > 0)
+                throw new IllegalArgumentException(INVALID_CIPHER_TEXT);
+
+            if (!binary && numbers.finish())
+                decrypt(numbers.block);
+
+            if (count != 0)
+                throw new IllegalArgumentException(INVALID_FORMAT);
+
+            write();
+            message.flush();
+        }
+
+        /**
+         * Read the numbers of a piece of cipher text in binary form.
+         * @param cipherText the piece of cipher text
+         * @throws IOException if the message cannot be written
+         */
+        private void readNumbers(ByteBuffer cipherText) throws IOException {
+
+            // Finish the number that started in the previous piece
+            while (partial.size() > 0 && cipherText.hasRemaining()) {
+
+                int group = cipherText.get() & 0xFF;
+
+                partial.write(group);
+
+                if ((group & 0x80) == 0) {
+                    add(CipherCodec.readNumber(ByteBuffer.wrap(partial.toByteArray())));
+                    partial.reset();
+                }
+            }
+
+            // Numbers end where the highest bit of a byte is not set
+            int end = cipherText.limit();
+
+            while (end > cipherText.position() && (cipherText.get(end - 1) & 0x80) != 0)
+                end--;
+
+            while (cipherText.position() < end)
+                add(CipherCodec.readNumber(cipherText));
+
+            // Keep the start of the number that continues in the next piece
+            while (cipherText.hasRemaining())
+                partial.write(cipherText.get());
+        }
+
+        /**
+         * Add the next number of the cipher text in binary form, and decrypt
+         * the block if it is complete.
+         * @param number the next number
+         * @throws IOException if the message cannot be written
+         */
+        private void add(BigInteger number) throws IOException {
+
+            block[count++] = number;
+
+            if (count < numbersPerBlock)
+                return;
+
+            decrypt(block);
+            count = 0;
+        }
+
+        /**
+         * Decrypt a complete block of the cipher text.
+         * @param block the cipher text block
+         * @throws IOException if the message cannot be written
+         */
+        private void decrypt(BigInteger[] block) throws IOException {
+
+            decryptBlock(key, block, letters);
+            out.append(letters).append('\n');
+
+            if (out.length() >= BUFFER_SIZE)
+                write();
+        }
+
+        /**
+         * Write the message that has not been written yet.
+         * @throws IOException if the message cannot be written
+         */
+        private void write() throws IOException {
+            message.write(CipherCodec.toArray(CipherCodec.toBytes(out.toString())));
+            out.setLength(0);
+        }
+    }
+
+    /**
+     * Collects the numbers of a cipher text in text form into blocks, with
+     * the same errors as CipherCodec.parse(). After an invalid number the
+     * rest of the cipher text is only counted, and finish() reports a wrong
+     * count of numbers before the invalid number, so the cipher text can be
+     * given in pieces and still fail as it would in one piece.
+     */
+    private class NumberCollector {
+
+        private final CipherTokenizer tokens = new CipherTokenizer();
+
+        // The block that add() or finish() has just completed
+        final BigInteger[] block = new BigInteger[numbersPerBlock];
+
+        private int numbers;        // numbers in the current block so far
+        private int invalid = -1;   // position of the first invalid number
+        private long length;        // number of characters added
+
+        /**
+         * Add the next character of the cipher text.
+         * @param c the character
+         * @return true if the character completed a block
+         */
+        boolean add(char c) {
+
+            length++;
+
+            return tokens.add(c) && addToken();
+        }
+
+        /**
+         * End the cipher text. A blank cipher text has one empty token, the
+         * same as in CipherCodec.parse(), so it is invalid.
+         * @return true if the last token completed a block
+         * @throws CipherTextException if the number of numbers does not fill
+         *         the blocks, or if there is an invalid number
+         */
+        boolean finish() {
+
+            boolean complete = tokens.finish() && addToken();
+
+            if (tokens.getCount() % numbersPerBlock != 0)
+                throw new CipherTextException(INVALID_FORMAT, length);
+
+            if (invalid >= 0)
+                throw new CipherTextException(INVALID_CIPHER_TEXT, invalid);
+
+            return complete;
+        }
+
+        /**
+         * Add the token that has just ended to the current block.
+         * @return true if the token completed a block
+         */
+        private boolean addToken() {
+
+            if (invalid >= 0)
+                return false;
+
+            if (!tokens.isNumber()) {
+                invalid = tokens.getStart();
+                return false;
+            }
+
+            block[numbers++] = tokens.getNumber();
+
+            if (numbers < numbersPerBlock)
+                return false;
+
+            numbers = 0;
+
+            return true;
+        }
+    }
+
+    /**
+     * Collects the letters of a message into blocks. Any character other
+     * than letters and numbers is ignored, and a block that is not complete
+     * is carried over to the next character, so the message can be given
+     * in pieces.
+     */
+    private class BlockCollector {
+
+        private int value;      // value of the current block so far
+        private int letters;    // number of letters in the current block
+
+        /**
+         * Add the next character of the message.
+         * @param c the character
+         * @return the value of the block if the character completed a block,
+         *         otherwise -1
+         * @throws IllegalArgumentException if the character is a number
+         */
+        int add(char c) {
+
+            boolean letter = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+
+            if (!letter) {
+
+                // Ignore everything else other than numbers
+                if (c >= '0' && c <= '9')
+                    throw new IllegalArgumentException(INVALID_MESSAGE);
+
+                return -1;
+            }
+
+            // i.e AB --> 00 01 --> 1
+            value = value * 100 + Convert.getValue(c);
+
+            if (++letters < charsPerBlock)
+                return -1;
+
+            int result = value;
+
+            value = 0;
+            letters = 0;
+
+            return result;
+        }
+
+        /**
+         * End the message, an incomplete block will be filled with 'X'.
+         * @return the value of the last block, or -1 if there is none
+         */
+        int finish() {
+
+            if (letters == 0)
+                return -1;
+
+            int result;
+
+            // Append an 'X' until the block is complete
+            do {
+                result = add('X');
+            } while (result < 0);
+
+            return result;
+        }
+    }
+}
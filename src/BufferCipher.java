@@ -0,0 +1,33 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * An encryption or a decryption that is given its input in pieces, such as
+ * the mapped regions of a file. The input is read straight from each
+ * buffer, and a block, a number or a token that is split between two
+ * buffers is carried over to the next one, so the result is the same as
+ * giving the whole input at once. The output is written as the blocks are
+ * produced.
+ *
+ * @author Su Khai Koh
+ */
+public interface BufferCipher {
+
+    /**
+     * Encrypt or decrypt the remaining bytes of the next piece of the input.
+     * The buffer is read to its limit.
+     * @param input the next piece of the input
+     * @throws IOException if the output cannot be written
+     * @throws IllegalArgumentException if the input is invalid, the output
+     *         of the blocks before it has been written already
+     */
+    public void update(ByteBuffer input) throws IOException;
+
+    /**
+     * End the input, write the last block and flush the output. The output
+     * is not closed.
+     * @throws IOException if the output cannot be written
+     * @throws IllegalArgumentException if the input ends within a block
+     */
+    public void finish() throws IOException;
+}
@@ -0,0 +1,277 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A class that handling the encoding of the cipher text. In binary form,
+ * every number of the cipher text is written as an unsigned LEB128 number,
+ * which has 7 bits in each byte starting from the lowest bits, and the
+ * highest bit of each byte is set if more bytes follow. In text form, the
+ * numbers of each block are separated by ", " and each block is on its own
+ * line, i.e "1234\n5678\n" or "1234, 5678\n".
+ *
+ * @author Su Khai Koh
+ */
+public class CipherCodec {
+
+    /**
+     * Write a non-negative number in binary form.
+     * @param out the stream to write into
+     * @param number the number to be written
+     */
+    public static void writeNumber(ByteArrayOutputStream out, BigInteger number) {
+
+        if (number.signum() < 0)
+            throw new IllegalArgumentException("Cipher text cannot be negative.");
+
+        int bits = number.bitLength();
+
+        // Small number, write it from a long
+        if (bits < Long.SIZE) {
+            writeNumber(out, number.longValue());
+            return;
+        }
+
+        for (int i = 0; i < bits; i += 7) {
+
+            int group = 0;
+
+            for (int j = 0; j < 7; j++)
+                if (number.testBit(i + j))
+                    group |= 1 << j;
+
+            out.write(i + 7 < bits ? group | 0x80 : group);
+        }
+    }
+
+    /**
+     * Write a non-negative number in binary form.
+     * @param out the stream to write into
+     * @param value the number to be written
+     */
+    public static void writeNumber(ByteArrayOutputStream out, long value) {
+
+        if (value < 0)
+            throw new IllegalArgumentException("Cipher text cannot be negative.");
+
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        out.write((int) value);
+    }
+
+    /**
+     * Read the next number in binary form.
+     * @param in the buffer to read from
+     * @return the number read
+     * @throws IllegalArgumentException if the buffer ends within a number
+     */
+    public static BigInteger readNumber(ByteBuffer in) {
+
+        long value = 0;
+        int shift = 0;
+
+        // Read into a long as long as it fits
+        while (shift < 63) {
+
+            int group = nextGroup(in);
+
+            value |= (long) (group & 0x7F) << shift;
+            shift += 7;
+
+            if ((group & 0x80) == 0)
+                return BigInteger.valueOf(value);
+        }
+
+        // Big number, collect the bits into a byte array
+        ByteArrayOutputStream magnitude = new ByteArrayOutputStream();
+
+        long bits = value;
+        int bitCount = 63;
+
+        int group;
+        do {
+            group = nextGroup(in);
+
+            while (bitCount >= 8) {
+                magnitude.write((int) bits);
+                bits >>>= 8;
+                bitCount -= 8;
+            }
+
+            bits |= (long) (group & 0x7F) << bitCount;
+            bitCount += 7;
+
+        } while ((group & 0x80) != 0);
+
+        while (bitCount > 0) {
+            magnitude.write((int) bits);
+            bits >>>= 8;
+            bitCount -= 8;
+        }
+
+        // The bytes were written from the lowest, reverse them
+        byte[] bytes = magnitude.toByteArray();
+
+        for (int i = 0, j = bytes.length - 1; i < j; i++, j--) {
+            byte b = bytes[i];
+            bytes[i] = bytes[j];
+            bytes[j] = b;
+        }
+
+        return new BigInteger(1, bytes);
+    }
+
+    /**
+     * Read the next number in binary form from a stream.
+     * @param in the stream to read from
+     * @return the number read, or null if the stream has ended
+     * @throws IOException if the stream cannot be read
+     * @throws IllegalArgumentException if the stream ends within a number
+     */
+    public static BigInteger readNumber(InputStream in) throws IOException {
+
+        int group = in.read();
+
+        if (group == -1)
+            return null;
+
+        // Collect the bytes of the number and read them from a buffer
+        ByteArrayOutputStream number = new ByteArrayOutputStream();
+
+        number.write(group);
+
+        while ((group & 0x80) != 0) {
+
+            group = in.read();
+
+            if (group == -1)
+                throw new IllegalArgumentException(BlockAlgorithm.INVALID_CIPHER_TEXT);
+
+            number.write(group);
+        }
+
+        return readNumber(ByteBuffer.wrap(number.toByteArray()));
+    }
+
+    /**
+     * Read the next byte of a number.
+     * @param in the buffer to read from
+     * @return the next byte, from 0 to 255
+     * @throws IllegalArgumentException if the buffer has no more byte
+     */
+    private static int nextGroup(ByteBuffer in) {
+
+        if (!in.hasRemaining())
+            throw new CipherTextException(BlockAlgorithm.INVALID_CIPHER_TEXT, in.position());
+
+        return in.get() & 0xFF;
+    }
+
+    /**
+     * Convert a cipher text from binary form to text form.
+     * @param cipherText the cipher text in binary form
+     * @param numbersPerBlock the number of numbers in each block
+     * @return the cipher text in text form, i.e "1234, 5678\n"
+     */
+    public static String format(ByteBuffer cipherText, int numbersPerBlock) {
+
+        StringBuilder result = new StringBuilder();
+
+        while (cipherText.hasRemaining()) {
+
+            for (int i = 0; i < numbersPerBlock; i++) {
+
+                if (i > 0)
+                    result.append(", ");
+
+                result.append(readNumber(cipherText));
+            }
+
+            result.append('\n');
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * Convert a cipher text from text form to binary form. Any character
+     * other than letters, numbers, commas and white spaces are ignored, and
+     * the numbers can be separated by either commas or white spaces. The
+     * cipher text is read once by a CipherTokenizer.
+     * @param cipherText the cipher text in text form
+     * @param numbersPerBlock the number of numbers in each block
+     * @return the cipher text in binary form
+     * @throws CipherTextException if the cipher text has an incomplete
+     *         block or contains non numeric letters, with the position of
+     *         the first invalid number
+     */
+    public static ByteBuffer parse(String cipherText, int numbersPerBlock) {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        CipherTokenizer tokens = new CipherTokenizer();
+        int invalid = -1;   // position of the first invalid number
+
+        for (int i = 0, length = cipherText.length(); i <= length; i++) {
+
+            boolean ended = i < length ? tokens.add(cipherText.charAt(i)) : tokens.finish();
+
+            if (!ended || invalid >= 0)
+                continue;
+
+            if (tokens.isLong())
+                writeNumber(out, tokens.getLong());
+            else if (tokens.isNumber())
+                writeNumber(out, tokens.getNumber());
+            else
+                invalid = tokens.getStart();
+        }
+
+        if (tokens.getCount() % numbersPerBlock != 0)
+            throw new CipherTextException(BlockAlgorithm.INVALID_FORMAT, cipherText.length());
+
+        if (invalid >= 0)
+            throw new CipherTextException(BlockAlgorithm.INVALID_CIPHER_TEXT, invalid);
+
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    /**
+     * Convert a message from text to bytes. Characters that do not fit in
+     * a byte are replaced and will be ignored by the encryption.
+     * @param message the message to be converted
+     * @return the message in bytes
+     */
+    public static ByteBuffer toBytes(String message) {
+        return ByteBuffer.wrap(message.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Convert the remaining bytes in the given buffer to a text.
+     * @param buffer the buffer to be converted
+     * @return the text of the remaining bytes
+     */
+    public static String toText(ByteBuffer buffer) {
+        return new String(toArray(buffer), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Copy the remaining bytes in the given buffer to an array.
+     * @param buffer the buffer to be copied
+     * @return the remaining bytes
+     */
+    public static byte[] toArray(ByteBuffer buffer) {
+
+        byte[] bytes = new byte[buffer.remaining()];
+
+        buffer.get(bytes);
+
+        return bytes;
+    }
+}
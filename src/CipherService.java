@@ -0,0 +1,566 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A local HTTP service that encrypts and decrypts messages with the
+ * algorithms, so that other programs on the same machine can use them
+ * without starting a JVM for every message. The service only listens on
+ * the loopback address.
+ *
+ *     POST /rsa/encrypt       the message in the body, the cipher text in
+ *                             the response, i.e "1234\n5678\n"
+ *     POST /rsa/decrypt       the cipher text in the body, the message in
+ *                             the response
+ *
+ * The requests for an algorithm are queued and run in micro-batches. The
+ * dispatcher of each algorithm takes all the requests that are waiting, up
+ * to MAX_BATCH_SIZE, takes the current keys of the algorithm once, checks
+ * and prepares them once, and runs the requests of the batch at the same
+ * time on a pool with a thread for every core. The next batch is taken when
+ * the batch has finished, so the requests that come in meanwhile are
+ * gathered into it. The keys are immutable, so the requests share them and
+ * their precomputed tables without a lock.
+ *
+ * The connections are handled on virtual threads if the JVM has them, so
+ * that many clients can wait for their batch at the same time. On older
+ * JVMs they are handled by a fixed pool of threads instead.
+ *
+ * @author Su Khai Koh
+ */
+public class CipherService {
+
+    // Default port of the service
+    public static final int DEFAULT_PORT = 8080;
+
+    // Maximum number of requests run in one batch
+    public static final int MAX_BATCH_SIZE = 256;
+
+    // Number of threads that handle the connections without virtual threads
+    private static final int HANDLER_THREADS = 64;
+
+    // Number of connections waiting to be accepted
+    private static final int BACKLOG = 1024;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final int OK          = 200,
+                             BAD_REQUEST = 400,
+                             NOT_FOUND   = 404,
+                             NOT_ALLOWED = 405,
+                             ERROR       = 500,
+                             UNAVAILABLE = 503;
+
+    private static final String STOPPED = "The service is stopped.";
+
+    private final Map<String, Batcher<?>> batchers = new LinkedHashMap<String, Batcher<?>>();
+
+    private final int port;
+
+    private HttpServer server;
+    private ExecutorService handlers;
+    private ExecutorService workers;    // runs the requests of the batches
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    /**
+     * Create a service on the given port. The algorithms have to be added
+     * before the service is started.
+     * @param port the port on the loopback address, or 0 for any free port
+     */
+    public CipherService(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Add an algorithm to the service, under the path "/name/". The keys
+     * of the algorithm can still be replaced while the service is running,
+     * and the batches that have started keep their keys.
+     * @param name the name of the algorithm in the path, i.e rsa
+     * @param algorithm the algorithm with its keys set up
+     * @throws IllegalStateException if the service has been started
+     */
+    public synchronized <K> void addAlgorithm(String name, BlockAlgorithm<K> algorithm) {
+
+        if (server != null)
+            throw new IllegalStateException("The service has been started.");
+
+        batchers.put(name, new Batcher<K>(name, algorithm));
+    }
+
+    /**
+     * Start listening for requests and start the dispatcher of every
+     * algorithm.
+     * @throws IOException if the port cannot be opened
+     */
+    public synchronized void start() throws IOException {
+
+        if (server != null)
+            return;
+
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+
+        server = HttpServer.create(address, BACKLOG);
+        handlers = newHandlerExecutor();
+        workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                                               newThreadFactory("cipher-service-worker-"));
+
+        server.setExecutor(handlers);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                CipherService.this.handle(exchange);
+            }
+        });
+
+        for (Batcher<?> batcher : batchers.values())
+            batcher.start();
+
+        server.start();
+    }
+
+    /**
+     * Stop the service. The requests that are waiting for a batch, or are
+     * in a batch that has not finished, are answered as unavailable.
+     */
+    public synchronized void stop() {
+
+        if (server == null)
+            return;
+
+        server.stop(0);
+        handlers.shutdown();
+
+        for (Batcher<?> batcher : batchers.values())
+            batcher.stop();
+
+        workers.shutdownNow();
+
+        server = null;
+        handlers = null;
+        workers = null;
+    }
+
+    /**
+     * Get the port that the service listens on.
+     * @return the port, or -1 if the service is not started
+     */
+    public synchronized int getPort() {
+        return server == null ? -1 : server.getAddress().getPort();
+    }
+
+    /**
+     * Get the number of requests that have been run.
+     * @return the number of requests
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Get the number of batches that have been run.
+     * @return the number of batches
+     */
+    public long getBatches() {
+        return batches.get();
+    }
+
+    /**
+     * Get the average number of requests that were run in one batch.
+     * @return the average batch size
+     */
+    public double getAverageBatchSize() {
+
+        long b = batches.get();
+
+        return b == 0 ? 0 : (double) requests.get() / b;
+    }
+
+    /**
+     * Create the executor of the connections, with a virtual thread for
+     * each connection if the JVM has them. The method is looked up by name
+     * so that the service still runs on the JVMs without virtual threads.
+     * @return the executor of the connections
+     */
+    private static ExecutorService newHandlerExecutor() {
+
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // No virtual threads, or they are not enabled
+        }
+
+        return Executors.newFixedThreadPool(HANDLER_THREADS, newThreadFactory("cipher-service-"));
+    }
+
+    /**
+     * Create a factory of numbered daemon threads.
+     * @param prefix the name of the threads before the number
+     * @return the factory of the threads
+     */
+    private static ThreadFactory newThreadFactory(final String prefix) {
+
+        return new ThreadFactory() {
+
+            private final AtomicLong count = new AtomicLong();
+
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, prefix + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * Handle one request, by queueing it to the dispatcher of its algorithm
+     * and waiting for the result.
+     * @param exchange the request and its response
+     * @throws IOException if the request cannot be read or the response
+     *         cannot be written
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+
+        try {
+            // i.e /rsa/encrypt --> "", "rsa", "encrypt"
+            String[] path = exchange.getRequestURI().getPath().split("/");
+
+            Batcher<?> batcher = path.length == 3 ? batchers.get(path[1]) : null;
+
+            if (batcher == null || (!path[2].equals("encrypt") && !path[2].equals("decrypt"))) {
+                respond(exchange, NOT_FOUND, "Unknown path: " + exchange.getRequestURI().getPath());
+                return;
+            }
+
+            if (!exchange.getRequestMethod().equals("POST")) {
+                respond(exchange, NOT_ALLOWED, "Only POST is allowed.");
+                return;
+            }
+
+            Request request = new Request(path[2].equals("encrypt"), readBody(exchange));
+
+            if (!batcher.submit(request)) {
+                respond(exchange, UNAVAILABLE, STOPPED);
+                return;
+            }
+
+            try {
+                respond(exchange, OK, request.result.get());
+            } catch (ExecutionException e) {
+
+                Throwable cause = e.getCause();
+
+                if (cause instanceof IllegalArgumentException)
+                    respond(exchange, BAD_REQUEST, cause.getMessage());
+                else if (cause instanceof IllegalStateException)
+                    respond(exchange, UNAVAILABLE, cause.getMessage());
+                else
+                    respond(exchange, ERROR, String.valueOf(cause.getMessage()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                respond(exchange, UNAVAILABLE, STOPPED);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Read the whole body of a request.
+     * @param exchange the request
+     * @return the body in text
+     * @throws IOException if the body cannot be read
+     */
+    private static String readBody(HttpExchange exchange) throws IOException {
+
+        InputStream in = exchange.getRequestBody();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        int count;
+        while ((count = in.read(buffer)) != -1)
+            body.write(buffer, 0, count);
+
+        return new String(body.toByteArray(), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Send the response of a request in plain text.
+     * @param exchange the request and its response
+     * @param status the HTTP status
+     * @param text the body of the response
+     * @throws IOException if the response cannot be written
+     */
+    private static void respond(HttpExchange exchange, int status, String text) throws IOException {
+
+        byte[] body = text.getBytes(StandardCharsets.ISO_8859_1);
+
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=ISO-8859-1");
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+
+        if (body.length > 0) {
+            OutputStream out = exchange.getResponseBody();
+            out.write(body);
+            out.close();
+        }
+    }
+
+    /**
+     * A request that is waiting for its batch.
+     */
+    private static class Request {
+
+        final boolean encrypt;      // true to encrypt, false to decrypt
+        final String text;          // message or cipher text
+
+        // The output, or the error of the request
+        final CompletableFuture<String> result = new CompletableFuture<String>();
+
+        Request(boolean encrypt, String text) {
+            this.encrypt = encrypt;
+            this.text = text;
+        }
+    }
+
+    /**
+     * The dispatcher of one algorithm. It takes all the requests that are
+     * waiting at once, up to MAX_BATCH_SIZE, and runs them at the same time
+     * on the workers with the same keys, prepared once for the batch.
+     * @param <K> the type of the keys of the algorithm
+     */
+    private class Batcher<K> {
+
+        private final String name;
+        private final BlockAlgorithm<K> algorithm;
+
+        private final BlockingQueue<Request> queue = new LinkedBlockingQueue<Request>();
+
+        private Thread dispatcher;
+
+        private volatile boolean stopped;
+
+        Batcher(String name, BlockAlgorithm<K> algorithm) {
+            this.name = name;
+            this.algorithm = algorithm;
+        }
+
+        void start() {
+
+            stopped = false;
+
+            dispatcher = new Thread(new Runnable() {
+                public void run() {
+                    dispatch();
+                }
+            }, "cipher-service-" + name);
+
+            dispatcher.setDaemon(true);
+            dispatcher.start();
+        }
+
+        void stop() {
+
+            stopped = true;
+            dispatcher.interrupt();
+
+            // Answer the requests that will never be run
+            Request request;
+            while ((request = queue.poll()) != null)
+                request.result.completeExceptionally(new IllegalStateException(STOPPED));
+        }
+
+        /**
+         * Queue a request for the next batch.
+         * @param request the request
+         * @return false if the dispatcher is stopped
+         */
+        boolean submit(Request request) {
+
+            if (stopped)
+                return false;
+
+            queue.add(request);
+
+            // Stopped while adding, the request may not have been answered
+            return !stopped || !queue.remove(request);
+        }
+
+        /**
+         * Keep running the waiting requests in batches until stopped.
+         */
+        private void dispatch() {
+
+            List<Request> batch = new ArrayList<Request>(MAX_BATCH_SIZE);
+
+            while (!stopped) {
+
+                try {
+                    // Wait for the first request, then take the others waiting
+                    batch.add(queue.take());
+
+                    queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+
+                    run(batch);
+                } catch (InterruptedException e) {
+                    return;
+                } finally {
+                    // Answer the requests of a batch that was stopped
+                    for (Request request : batch)
+                        request.result.completeExceptionally(new IllegalStateException(STOPPED));
+
+                    batch.clear();
+                }
+            }
+        }
+
+        /**
+         * Run a batch with the current keys of the algorithm, and wait for
+         * all of its requests to finish.
+         * @param batch the requests of the batch
+         * @throws InterruptedException if the service is stopped
+         */
+        private void run(List<Request> batch) throws InterruptedException {
+
+            final K key = algorithm.getKey();
+
+            // Check and prepare the keys once for the whole batch
+            RuntimeException encryptError = prepare(key, batch, true);
+            RuntimeException decryptError = prepare(key, batch, false);
+
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(batch.size());
+
+            for (final Request request : batch) {
+
+                RuntimeException error = request.encrypt ? encryptError : decryptError;
+
+                if (error != null) {
+                    request.result.completeExceptionally(error);
+                    continue;
+                }
+
+                tasks.add(new Callable<Void>() {
+                    public Void call() {
+                        runRequest(key, request);
+                        return null;
+                    }
+                });
+            }
+
+            workers.invokeAll(tasks);
+
+            requests.addAndGet(batch.size());
+            batches.incrementAndGet();
+        }
+
+        /**
+         * Check and prepare the keys for the requests of a batch that
+         * encrypt, or for the ones that decrypt.
+         * @param key the keys of the batch
+         * @param batch the requests of the batch
+         * @param encrypt true to prepare for encryption, false for decryption
+         * @return the error if the keys cannot be used, otherwise null
+         */
+        private RuntimeException prepare(K key, List<Request> batch, boolean encrypt) {
+
+            for (Request request : batch) {
+
+                if (request.encrypt != encrypt)
+                    continue;
+
+                try {
+                    algorithm.prepareKeys(key, encrypt);
+                    return null;
+                } catch (RuntimeException e) {
+                    return e;
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * Run one request with the prepared keys and complete its result.
+         * @param key the keys of the batch
+         * @param request the request
+         */
+        private void runRequest(K key, Request request) {
+
+            StringWriter out = new StringWriter();
+
+            try {
+                if (request.encrypt)
+                    algorithm.encryptPrepared(key, new StringReader(request.text), out);
+                else
+                    algorithm.decryptPrepared(key, new StringReader(request.text), out);
+
+                request.result.complete(out.toString());
+            } catch (IOException e) {
+                request.result.completeExceptionally(e);
+            } catch (RuntimeException e) {
+                request.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Run the service with generated keys for RSA, ElGamal and Knapsack,
+     * until the JVM is stopped. The keys are printed to the standard error.
+     * @param args the port, optional
+     * @throws IOException if the port cannot be opened
+     */
+    public static void main(String[] args) throws IOException {
+
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+
+        RSA rsa = new RSA();
+        ElGamal elGamal = new ElGamal();
+        Knapsack knapsack = new Knapsack();
+
+        // Without k, a random k is used in each block
+        elGamal.setPrivateKeys(elGamal.getA(), "");
+
+        CipherService service = new CipherService(port);
+
+        service.addAlgorithm("rsa", rsa);
+        service.addAlgorithm("elgamal", elGamal);
+        service.addAlgorithm("knapsack", knapsack);
+
+        service.start();
+
+        PrintStream err = System.err;
+
+        err.println("rsa:      p=" + rsa.getP() + " q=" + rsa.getQ() + " d=" + rsa.getD() +
+                    " n=" + rsa.getN() + " e=" + rsa.getE());
+        err.println("elgamal:  a=" + elGamal.getA() + " p=" + elGamal.getP() +
+                    " g=" + elGamal.getG() + " r=" + elGamal.getR());
+        err.println("knapsack: m=" + knapsack.getM() + " a=" + knapsack.getA() +
+                    " S=\"" + knapsack.getS() + "\" W=\"" + knapsack.getW() + "\"");
+        err.println("Listening on http://127.0.0.1:" + service.getPort() + "/");
+    }
+}
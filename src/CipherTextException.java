@@ -0,0 +1,32 @@
+/**
+ * An exception thrown when a cipher text is invalid. The message is the
+ * same as the one shown to the user, and the position tells where in the
+ * cipher text the error was found.
+ *
+ * @author Su Khai Koh
+ */
+public class CipherTextException extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long position;
+
+    /**
+     * Create an exception for an error at the given position.
+     * @param message the message of the error
+     * @param position the position of the error within the cipher text, or
+     *        -1 if the position is not known
+     */
+    public CipherTextException(String message, long position) {
+        super(message);
+        this.position = position;
+    }
+
+    /**
+     * Get the position of the error within the cipher text.
+     * @return the position of the error, or -1 if it is not known
+     */
+    public long getPosition() {
+        return position;
+    }
+}
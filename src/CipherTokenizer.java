@@ -0,0 +1,255 @@
+import java.math.BigInteger;
+
+/**
+ * A tokenizer that splits a list of numbers in text form, such as a cipher
+ * text or a Knapsack key, in a single pass. The characters are added one by
+ * one, so the text can also be given in pieces.
+ *
+ * The rules are the same as trimming the text, removing every character
+ * other than letters, numbers, commas and white spaces, and splitting the
+ * rest by commas and white spaces:
+ *     "1234, 5678\n"   -->   1234   5678
+ *     "(12)(34), 56"   -->   1234   56
+ *     ", 12"           -->   ""     12
+ *     ", "             -->   (no token)
+ * A token is only valid if it has numbers only, so an empty token or a
+ * token with letters is invalid.
+ *
+ * @author Su Khai Koh
+ */
+public class CipherTokenizer {
+
+    // Maximum number of digits that always fit in a long
+    private static final int MAX_LONG_DIGITS = 18;
+
+    private int position;       // number of characters added
+    private boolean started;    // true after the leading white spaces
+    private int count;          // number of tokens ended
+
+    // The current token
+    private int start;          // position of the first character
+    private int length;         // number of letters and numbers
+    private boolean letters;    // true if the token has letters
+    private long value;         // value of the token if it fits in a long
+    private final StringBuilder digits = new StringBuilder();
+    private boolean ended;      // true if the token has ended
+
+    // True if the text started with a separator, which is an empty token
+    private boolean leadingSeparator;
+
+    // True if the text started with a white space separator, which may be
+    // trailing white spaces that are trimmed
+    private boolean spaceSeparator;
+
+    // The letter or number that follows the empty token
+    private char carry;
+    private boolean carried;
+
+    /**
+     * Add the next character of the text.
+     * @param c the character
+     * @return true if the character ended a token, which can then be read
+     *         until the next character is added
+     */
+    public boolean add(char c) {
+
+        int index = position++;
+
+        if (ended) {
+
+            clear(index);
+
+            // The letter after the empty token starts the next token
+            if (carried) {
+                carried = false;
+                append(carry, index - 1);
+            }
+        }
+
+        // Leading white spaces are ignored
+        if (!started && c <= ' ')
+            return false;
+
+        if (!started) {
+            started = true;
+            start = index;
+        }
+
+        // A white space is only a separator if it is not trailing
+        if (spaceSeparator && c > ' ') {
+            spaceSeparator = false;
+            leadingSeparator = true;
+        }
+
+        if ((c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+
+            // The text started with a separator, end the empty token first
+            if (leadingSeparator) {
+                leadingSeparator = false;
+                carry = c;
+                carried = true;
+                return end();
+            }
+
+            append(c, index);
+            return false;
+        }
+
+        boolean separator = c == ',' || c == ' ' || c == '\t' || c == '\n' ||
+                            c == '\u000B' || c == '\f' || c == '\r';
+
+        // Any other character is removed
+        if (!separator)
+            return false;
+
+        // Separators after a token are collapsed
+        if (length > 0)
+            return end();
+
+        // The text starts with an empty token if it starts with a separator,
+        // but only if a number follows
+        if (count == 0 && c == ',')
+            leadingSeparator = true;
+        else if (count == 0)
+            spaceSeparator = true;
+
+        return false;
+    }
+
+    /**
+     * End the text. A text with nothing but white spaces and other
+     * characters has one empty token, and a text with nothing but
+     * separators has no token at all.
+     * @return true if there is a last token, which can then be read
+     */
+    public boolean finish() {
+
+        if (ended) {
+
+            clear(position);
+
+            if (carried) {
+                carried = false;
+                append(carry, position - 1);
+            }
+        }
+
+        if (length > 0 || (count == 0 && !leadingSeparator))
+            return end();
+
+        return false;
+    }
+
+    /**
+     * Check whether only white spaces have been added so far.
+     * @return true if the text is blank
+     */
+    public boolean isBlank() {
+        return !started;
+    }
+
+    /**
+     * Get the number of tokens ended so far.
+     * @return the number of tokens
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Get the position of the current token within the text.
+     * @return the position of the first character of the token
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * Check whether the current token has numbers only.
+     * @return true if the token is a valid number
+     */
+    public boolean isNumber() {
+        return length > 0 && !letters;
+    }
+
+    /**
+     * Check whether the value of the current token fits in a long.
+     * @return true if getLong() can be used
+     */
+    public boolean isLong() {
+        return isNumber() && length <= MAX_LONG_DIGITS;
+    }
+
+    /**
+     * Get the value of the current token, which fits in a long.
+     * @return the value of the token
+     */
+    public long getLong() {
+        return value;
+    }
+
+    /**
+     * Get the value of the current token.
+     * @return the value of the token
+     * @throws NumberFormatException if the token is not a valid number
+     */
+    public BigInteger getNumber() {
+
+        if (!isNumber())
+            throw new NumberFormatException("Invalid number at position " + start);
+
+        return isLong() ? BigInteger.valueOf(value) : new BigInteger(digits.toString());
+    }
+
+    /**
+     * Add a letter or a number to the current token.
+     * @param c the letter or number
+     * @param index the position of the character
+     */
+    private void append(char c, int index) {
+
+        if (length == 0)
+            start = index;
+
+        length++;
+
+        if (c > '9') {
+            letters = true;
+            return;
+        }
+
+        if (length <= MAX_LONG_DIGITS) {
+            value = value * 10 + (c - '0');
+            return;
+        }
+
+        // Too long for a long, keep the digits instead
+        if (length == MAX_LONG_DIGITS + 1)
+            digits.append(value);
+
+        digits.append(c);
+    }
+
+    /**
+     * End the current token.
+     * @return true
+     */
+    private boolean end() {
+        ended = true;
+        count++;
+        return true;
+    }
+
+    /**
+     * Start a new token.
+     * @param index the position of the next character
+     */
+    private void clear(int index) {
+        start = index;
+        length = 0;
+        letters = false;
+        value = 0;
+        digits.setLength(0);
+        ended = false;
+    }
+}
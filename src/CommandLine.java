@@ -0,0 +1,449 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A command line program that encrypts or decrypts a message with one of
+ * the algorithms, without opening a window, so that it can be used in
+ * scripts. The input is read from a file or the standard input and the
+ * output is written to a file or the standard output as the blocks are
+ * done, and the throughput is reported at the end.
+ *
+ * This class does not use any AWT or Swing class, so a short job starts as
+ * fast as the JVM does.
+ *
+ *     java -cp cryptosystem.jar CommandLine rsa encrypt n=3233 e=17 -i message.txt
+ *
+ * @author Su Khai Koh
+ */
+public class CommandLine {
+
+    // Exit status
+    public static final int SUCCESS = 0,
+                            FAILURE = 1,
+                            USAGE   = 2;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final String USAGE_TEXT =
+        "Usage: java -cp cryptosystem.jar CommandLine ALGORITHM MODE [KEY=VALUE]... [OPTION]...\n" +
+        "Encrypt or decrypt a message with RSA, ElGamal or Knapsack.\n" +
+        "\n" +
+        "  ALGORITHM        rsa, elgamal or knapsack\n" +
+        "  MODE             encrypt or decrypt\n" +
+        "  KEY=VALUE        a key of the algorithm, the keys not given are generated\n" +
+        "                     rsa:      p, q, d, n, e\n" +
+        "                     elgamal:  a, k, p, g, r   (without k, k is random in each block)\n" +
+        "                     knapsack: m, a, S, W      (S and W as \"1, 2, 3, 4, 5\")\n" +
+        "  -i FILE          read the input from FILE instead of the standard input\n" +
+        "  -o FILE          write the output to FILE instead of the standard output\n" +
+        "  -b, --binary     the cipher text is in binary form instead of text form\n" +
+        "  -m, --max VALUE  maximum value of the generated keys\n" +
+        "  -k, --keys       print the keys to the standard error\n" +
+        "  -s, --strong     generate the keys and the random k with SecureRandom\n" +
+        "  -h, --help       print this help\n";
+
+    /**
+     * Run the program.
+     * @param args the command line arguments, see USAGE_TEXT
+     */
+    public static void main(String[] args) {
+        System.exit(run(args, System.in, System.out, System.err));
+    }
+
+    /**
+     * Run the program with the given arguments and streams.
+     * @param args the command line arguments
+     * @param in the standard input
+     * @param out the standard output
+     * @param err the standard error, for the errors and the throughput
+     * @return the exit status
+     */
+    public static int run(String[] args, InputStream in, OutputStream out, PrintStream err) {
+
+        if (args.length == 1 && (args[0].equals("-h") || args[0].equals("--help"))) {
+            err.print(USAGE_TEXT);
+            return SUCCESS;
+        }
+
+        if (args.length < 2)
+            return usage(err, "Missing algorithm or mode.");
+
+        String algorithmName = args[0].toLowerCase(Locale.ROOT);
+        String mode = args[1].toLowerCase(Locale.ROOT);
+
+        if (!mode.equals("encrypt") && !mode.equals("decrypt"))
+            return usage(err, "Unknown mode: " + args[1]);
+
+        List<String> keyNames;
+
+        switch (algorithmName) {
+            case "rsa":      keyNames = Arrays.asList("p", "q", "d", "n", "e"); break;
+            case "elgamal":  keyNames = Arrays.asList("a", "k", "p", "g", "r"); break;
+            case "knapsack": keyNames = Arrays.asList("m", "a", "S", "W");      break;
+            default: return usage(err, "Unknown algorithm: " + args[0]);
+        }
+
+        Map<String, String> keys = new LinkedHashMap<String, String>();
+        String inputName = null;
+        String outputName = null;
+        String maxValue = null;
+        boolean binary = false;
+        boolean showKeys = false;
+
+        for (int i = 2; i < args.length; i++) {
+
+            String arg = args[i];
+            int equals = arg.indexOf('=');
+
+            if (arg.equals("-i") || arg.equals("-o") || arg.equals("-m") || arg.equals("--max")) {
+
+                if (i + 1 == args.length)
+                    return usage(err, "Missing value of " + arg);
+
+                String value = args[++i];
+
+                if (arg.equals("-i"))
+                    inputName = value;
+                else if (arg.equals("-o"))
+                    outputName = value;
+                else
+                    maxValue = value;
+            } else if (arg.equals("-b") || arg.equals("--binary")) {
+                binary = true;
+            } else if (arg.equals("-k") || arg.equals("--keys")) {
+                showKeys = true;
+            } else if (arg.equals("-s") || arg.equals("--strong")) {
+                RandomSource.setDefault(RandomSource.STRONG);
+            } else if (equals > 0 && keyNames.contains(arg.substring(0, equals))) {
+                keys.put(arg.substring(0, equals), arg.substring(equals + 1));
+            } else {
+                return usage(err, "Unknown argument: " + arg);
+            }
+        }
+
+        try {
+            Algorithm algorithm = createAlgorithm(algorithmName, maxValue, keys, showKeys, err);
+
+            boolean encrypt = mode.equals("encrypt");
+
+            long start = System.nanoTime();
+            long[] sizes = inputName != null && outputName != null ?
+                    process(algorithm, encrypt, binary, new File(inputName), new File(outputName)) :
+                    process(algorithm, encrypt, binary, inputName, outputName, in, out);
+            long time = System.nanoTime() - start;
+
+            reportThroughput(err, encrypt, sizes[0], sizes[1], time);
+
+            return SUCCESS;
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            return FAILURE;
+        } catch (IOException e) {
+            err.println(e.getMessage());
+            return FAILURE;
+        } catch (ArithmeticException e) {
+            // Keys that cannot be used, i.e a has no inverse modulo m
+            return usage(err, "Invalid keys: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Create the algorithm and set the given keys. If all the keys are given,
+     * the algorithm is created with them and no key is generated. Otherwise
+     * the keys that are not given keep the values generated for the maximum
+     * value.
+     * @param name the name of the algorithm, rsa, elgamal or knapsack
+     * @param maxValue the maximum value of the generated keys, or null for
+     *        the default
+     * @param keys the keys given by name
+     * @param showKeys true to print the keys to the standard error
+     * @param err the standard error
+     * @return the algorithm with its keys set up
+     * @throws IllegalArgumentException if a key is not a valid number
+     */
+    private static Algorithm createAlgorithm(String name, String maxValue,
+            Map<String, String> keys, boolean showKeys, PrintStream err) {
+
+        String keyText;
+        Algorithm algorithm;
+
+        switch (name) {
+            case "rsa": {
+                RSA rsa;
+
+                if (hasKeys(keys, "p", "q", "d", "n", "e")) {
+                    rsa = new RSA(new RSAKey(number(keys, "p"), number(keys, "q"),
+                            number(keys, "d"), number(keys, "n"), number(keys, "e")));
+                } else {
+                    rsa = maxValue != null ? new RSA(maxValue) : new RSA();
+
+                    rsa.setPrivateKeys(key(keys, "p", rsa.getP()), key(keys, "q", rsa.getQ()),
+                                       key(keys, "d", rsa.getD()));
+                    rsa.setPublicKeys(key(keys, "n", rsa.getN()), key(keys, "e", rsa.getE()));
+                }
+
+                keyText = "p=" + rsa.getP() + " q=" + rsa.getQ() + " d=" + rsa.getD() +
+                          " n=" + rsa.getN() + " e=" + rsa.getE();
+                algorithm = rsa;
+                break;
+            }
+
+            case "elgamal": {
+                ElGamal eg;
+
+                // Without k, a random k is used in each block
+                String k = key(keys, "k", "");
+
+                if (hasKeys(keys, "a", "p", "g", "r")) {
+                    eg = new ElGamal(new ElGamalKey(number(keys, "a"),
+                            k.trim().isEmpty() ? null : new BigInteger(k),
+                            number(keys, "p"), number(keys, "g"), number(keys, "r")));
+                } else {
+                    eg = maxValue != null ? new ElGamal(maxValue) : new ElGamal();
+
+                    eg.setPrivateKeys(key(keys, "a", eg.getA()), k);
+                    eg.setPublicKeys(key(keys, "p", eg.getP()), key(keys, "g", eg.getG()),
+                                     key(keys, "r", eg.getR()));
+                }
+
+                keyText = "a=" + eg.getA() + " k=" + k + " p=" + eg.getP() +
+                          " g=" + eg.getG() + " r=" + eg.getR();
+                algorithm = eg;
+                break;
+            }
+
+            default: {
+                Knapsack ks;
+
+                if (hasKeys(keys, "m", "a", "S", "W")) {
+                    ks = new Knapsack(new KnapsackKey(number(keys, "m"), number(keys, "a"),
+                            Knapsack.parseWeights(keys.get("S")),
+                            Knapsack.parseWeights(keys.get("W"))));
+                } else {
+                    ks = maxValue != null ? new Knapsack(maxValue) : new Knapsack();
+
+                    ks.setPrivateKeys(key(keys, "m", ks.getM()), key(keys, "a", ks.getA()),
+                                      key(keys, "S", ks.getS()));
+                    ks.setPublicKeys(key(keys, "W", ks.getW()));
+                }
+
+                keyText = "m=" + ks.getM() + " a=" + ks.getA() +
+                          " S=\"" + ks.getS() + "\" W=\"" + ks.getW() + "\"";
+                algorithm = ks;
+                break;
+            }
+        }
+
+        if (showKeys)
+            err.println(keyText);
+
+        return algorithm;
+    }
+
+    /**
+     * Check whether the keys of all the given names are given.
+     * @param keys the keys given by name
+     * @param names the names of the keys
+     * @return true if every key is given
+     */
+    private static boolean hasKeys(Map<String, String> keys, String... names) {
+        return keys.keySet().containsAll(Arrays.asList(names));
+    }
+
+    /**
+     * Get the value of a key that is given.
+     * @param keys the keys given by name
+     * @param name the name of the key
+     * @return the value of the key
+     * @throws NumberFormatException if the key is not a valid number
+     */
+    private static BigInteger number(Map<String, String> keys, String name) {
+        return new BigInteger(keys.get(name));
+    }
+
+    /**
+     * Get a key given by name.
+     * @param keys the keys given by name
+     * @param name the name of the key
+     * @param generated the generated value of the key
+     * @return the given value, or the generated value if it is not given
+     */
+    private static String key(Map<String, String> keys, String name, String generated) {
+        String value = keys.get(name);
+        return value == null ? generated : value;
+    }
+
+    /**
+     * Encrypt or decrypt a file into another file, with the input mapped into
+     * memory.
+     * @return the sizes of the input and the output in bytes
+     */
+    private static long[] process(Algorithm algorithm, boolean encrypt, boolean binary,
+            File input, File output) throws IOException {
+
+        FileCipher cipher = new FileCipher(algorithm, binary);
+
+        if (encrypt)
+            cipher.encrypt(input, output);
+        else
+            cipher.decrypt(input, output);
+
+        return new long[] {input.length(), output.length()};
+    }
+
+    /**
+     * Encrypt or decrypt from a file or the standard input to a file or the
+     * standard output.
+     * @param inputName the input file, or null for the standard input
+     * @param outputName the output file, or null for the standard output
+     * @return the sizes of the input and the output in bytes
+     */
+    private static long[] process(Algorithm algorithm, boolean encrypt, boolean binary,
+            String inputName, String outputName, InputStream in, OutputStream out)
+            throws IOException {
+
+        CountingInputStream input = new CountingInputStream(new BufferedInputStream(
+                inputName == null ? in : new FileInputStream(inputName), BUFFER_SIZE));
+        CountingOutputStream output = new CountingOutputStream(new BufferedOutputStream(
+                outputName == null ? out : new FileOutputStream(outputName), BUFFER_SIZE));
+
+        try {
+            if (binary && encrypt) {
+                algorithm.encrypt(input, output);
+            } else if (binary) {
+                algorithm.decrypt(input, output);
+            } else {
+                InputStreamReader reader = new InputStreamReader(input, StandardCharsets.ISO_8859_1);
+                Writer writer = new OutputStreamWriter(output, StandardCharsets.ISO_8859_1);
+
+                if (encrypt)
+                    algorithm.encrypt(reader, writer);
+                else
+                    algorithm.decrypt(reader, writer);
+
+                writer.flush();
+            }
+
+            output.flush();
+        } finally {
+            if (inputName != null)
+                input.close();
+            if (outputName != null)
+                output.close();
+        }
+
+        return new long[] {input.getCount(), output.getCount()};
+    }
+
+    /**
+     * Print the sizes, the time and the throughput of the work.
+     * @param err the standard error
+     * @param encrypt true if the input was encrypted
+     * @param inputSize the size of the input in bytes
+     * @param outputSize the size of the output in bytes
+     * @param time the time of the work in nanoseconds
+     */
+    private static void reportThroughput(PrintStream err, boolean encrypt,
+            long inputSize, long outputSize, long time) {
+
+        double seconds = time / 1e9;
+        double megabytes = inputSize / (1024.0 * 1024.0);
+
+        err.println(String.format(Locale.ROOT, "%s %d bytes into %d bytes in %.3f s, %.2f MB/s",
+                encrypt ? "Encrypted" : "Decrypted", inputSize, outputSize, seconds,
+                seconds > 0 ? megabytes / seconds : 0.0));
+    }
+
+    /**
+     * Print an error and the usage.
+     * @param err the standard error
+     * @param error the error
+     * @return the exit status for a wrong usage
+     */
+    private static int usage(PrintStream err, String error) {
+        err.println(error);
+        err.print(USAGE_TEXT);
+        return USAGE;
+    }
+
+    /**
+     * An input stream that counts the bytes read.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        public int read() throws IOException {
+
+            int b = in.read();
+
+            if (b != -1)
+                count++;
+
+            return b;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+
+            int n = in.read(b, off, len);
+
+            if (n > 0)
+                count += n;
+
+            return n;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * An output stream that counts the bytes written.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
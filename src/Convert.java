@@ -1,3 +1,5 @@
+import java.math.BigInteger;
+
 /**
  * A class that handling all the convension of the characters, such as from
  * alphabetic letters to numeric numbers, vice versa, or from a binary form
@@ -10,6 +12,28 @@ public class Convert {
     // Total number of alphabetic characters
     public static final int ALPHABETIC_CHARACTERS = 26;
     
+    // LETTER_VALUES[c] = value of the ASCII letter c, i.e A or a --> 0
+    private static final int[] LETTER_VALUES = new int[128];
+    
+    // LETTERS[n] = letter of the two digits n, i.e 01 --> B, 27 --> B
+    private static final char[] LETTERS = new char[100];
+    
+    // DIGITS[n] = the two digits of n, i.e 1 --> "01"
+    private static final char[][] DIGITS = new char[100][];
+    
+    private static final BigInteger TEN_THOUSAND = BigInteger.valueOf(10000);
+    
+    static {
+        
+        for (int c = 0; c < LETTER_VALUES.length; c++)
+            LETTER_VALUES[c] = Character.toUpperCase((char) c) - 'A';
+        
+        for (int n = 0; n < 100; n++) {
+            LETTERS[n] = (char) (n % ALPHABETIC_CHARACTERS + 'A');
+            DIGITS[n] = new char[] {(char) (n / 10 + '0'), (char) (n % 10 + '0')};
+        }
+    }
+    
     /**
      * Convert the given string to a number format.
      * i.e A    -->    00
@@ -21,6 +45,39 @@ public class Convert {
      */
     public static String stringToNumber(String string) {
         
+        int length = string.length();
+        
+        char[] result = new char[length == 1 ? 4 : length * 2];
+        int offset = 0;
+        
+        if (length == 1) {
+            result[offset++] = '0';
+            result[offset++] = '0';
+        }
+        
+        for (int i = 0; i < length; i++) {
+            
+            int n = getValue(string.charAt(i));
+            
+            // Not a letter, write the value as it is
+            if (n < 0 || n >= 100)
+                return stringToNumberSlow(string);
+            
+            result[offset++] = DIGITS[n][0];
+            result[offset++] = DIGITS[n][1];
+        }
+        
+        return new String(result);
+    }
+    
+    /**
+     * Convert the given string to a number format, where the string may have
+     * characters other than letters.
+     * @param string the string to be converted
+     * @return the number of the given string
+     */
+    private static String stringToNumberSlow(String string) {
+        
         string = string.toUpperCase();
         
         int n;
@@ -43,6 +100,18 @@ public class Convert {
         return result.toString();
     }
     
+    /**
+     * Get the number form of two letters, with the same values as
+     * stringToNumber(), i.e AB --> 0001 --> 1. Both characters have to be
+     * alphabetic letters.
+     * @param first the first letter
+     * @param second the second letter
+     * @return the number of the two letters
+     */
+    public static int charsToNumber(char first, char second) {
+        return getValue(first) * 100 + getValue(second);
+    }
+    
     /**
      * Convert the given number into a string. The maximum characters in the
      * given number must be 4 or less.
@@ -55,27 +124,54 @@ public class Convert {
      */
     public static String numberToString(String number) {
         
-        // Pad the left with '0'
-        number = ("0000" + number).substring(number.length());
+        int length = number.length();
+        int value = 0;
         
-        StringBuilder result = new StringBuilder();
+        // Only the last four digits are used, the rest is padded with '0'
+        for (int i = Math.max(length - 4, 0); i < length; i++)
+            value = value * 10 + (number.charAt(i) - '0');
         
-        for (int i = 0; i < number.length(); i++) {
-            
-            String str = Integer.toString((number.charAt(i) - '0')) + 
-                         Integer.toString((number.charAt(++i) - '0'));
-            
-            int n = Integer.parseInt(str);
-            
-            n %= ALPHABETIC_CHARACTERS;
-            
-            // Convert the number back to character
-            char c = (char)(n + 'A');
-            
-            result.append(c);
-        }
+        char[] result = new char[2];
         
-        return result.toString();
+        numberToChars(value, result, 0);
+        
+        return new String(result);
+    }
+    
+    /**
+     * Convert the given number into two letters, with the same letters as
+     * numberToString(), and write them into the given buffer. Only the last
+     * four digits of the number are used.
+     * i.e 0101  -->    BB
+     *     2500  -->    ZA
+     * @param number the number to be converted, which is not negative
+     * @param buffer the buffer to write into
+     * @param offset the position of the first letter in the buffer
+     */
+    public static void numberToChars(int number, char[] buffer, int offset) {
+        
+        number %= 10000;
+        
+        buffer[offset] = LETTERS[number / 100];
+        buffer[offset + 1] = LETTERS[number % 100];
+    }
+    
+    /**
+     * Convert the given number into two letters, with the same letters as
+     * numberToString(), and write them into the given buffer. Only the last
+     * four digits of the number are used.
+     * @param number the number to be converted, which is not negative
+     * @param buffer the buffer to write into
+     * @param offset the position of the first letter in the buffer
+     */
+    public static void numberToChars(BigInteger number, char[] buffer, int offset) {
+        
+        // Get the last four digits without converting the whole number
+        int lastDigits = number.bitLength() < Long.SIZE ?
+                         (int) (number.longValue() % 10000) :
+                         number.mod(TEN_THOUSAND).intValue();
+        
+        numberToChars(lastDigits, buffer, offset);
     }
     
     /** 
@@ -89,6 +185,9 @@ public class Convert {
      */
     public static int getValue(char c) {
         
+        if (c < LETTER_VALUES.length)
+            return LETTER_VALUES[c];
+        
         c = Character.toUpperCase(c);
         
         int value = c - 'A';
@@ -109,6 +208,17 @@ public class Convert {
         
         int value = Integer.parseInt(binaryForm, 2);
         
+        return valueToCharacter(value);
+    }
+    
+    /** 
+     * Get the character of the given int value, the opposite of getValue().
+     * i.e 0  --> A
+     *     25 --> Z
+     * @param value the int value of the character
+     * @return an alphabetic letter of the given value
+     */
+    public static char valueToCharacter(int value) {
         return (char) (value + 'A');
     }
 }
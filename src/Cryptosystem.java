@@ -12,6 +12,16 @@ import java.awt.event.ActionListener;
 import java.awt.event.FocusEvent;
 import java.awt.event.FocusListener;
 import java.awt.event.KeyEvent;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import javax.swing.*;
 import javax.swing.UIManager.LookAndFeelInfo;
 import javax.swing.text.DefaultEditorKit;
@@ -45,7 +55,8 @@ public class Cryptosystem extends JFrame {
     private JPanel leftPanel, centerPanel, rightPanel, egPanel, rsaPanel, ksPanel;
     private JRadioButton encryptRadioButton, decryptRadioButton;
     private JTextArea inputTextArea, resultTextArea;
-    private JButton newKeyButton, submitButton;
+    private JButton newKeyButton, submitButton, cancelButton;
+    private JProgressBar progressBar;
     private JLabel headerLabel;
     private JTextField textField1, textField2, textField3, textField4, textField5;
     private JComboBox<String> algorithmSelectionList;
@@ -54,11 +65,16 @@ public class Cryptosystem extends JFrame {
     private ElGamal eg;
     private RSA rsa;
     private Knapsack ks;
+    private SwingWorker<?, ?> worker;   // the running work, or null
 
     private static final int ELGAMAL  = 1,
                              RSA      = 2,
                              KNAPSACK = 3;
     
+    // Number of characters of the input processed between two updates of
+    // the progress bar and the result
+    private static final int CHUNK_SIZE = 1024;
+    
     private GridBagConstraints c = new GridBagConstraints();
     
     /**
@@ -216,9 +232,18 @@ public class Cryptosystem extends JFrame {
             long low = Long.parseLong(from);
             long high = Long.parseLong(to);
             
-            String prime = Prime.getPrime(low, high).toString();
+            BigInteger p;
+            
+            try {
+                p = Prime.getPrime(low, high);
+            } catch (IllegalArgumentException e) {
+                // No prime number within the given range
+                JOptionPane.showMessageDialog(null, e.getMessage(), 
+                        "Prime Number", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
             
-            JTextField tfPrime = new JTextField(prime);
+            JTextField tfPrime = new JTextField(p.toString());
             tfPrime.setEditable(false);
             
             // Show the prime in text field
@@ -252,42 +277,11 @@ public class Cryptosystem extends JFrame {
         newKeyButton = new JButton("New Keys");
         newKeyButton.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
-                switch (selectedAlgorithm) {
-                    case ELGAMAL:
-                        eg.generateAllKeys();
-                        textField1.setText(eg.getA());
-                        textField2.setText(eg.getK());
-                        textField3.setText(eg.getP());
-                        textField4.setText(eg.getG());
-                        textField5.setText(eg.getR());
-                        break;
-                        
-                    case RSA:
-                        rsa.generateAllKeys();
-                        textField1.setText(rsa.getP());
-                        textField2.setText(rsa.getQ());
-                        textField3.setText(rsa.getD());
-                        textField4.setText(rsa.getN());
-                        textField5.setText(rsa.getE());
-                        break;
-                        
-                    case KNAPSACK:
-                        ks.generateAllKeys();
-                        textField1.setText(ks.getM());
-                        textField2.setText(ks.getA());
-                        textField3.setText(ks.getS());
-                        textField4.setText(ks.getW());
-                        break;
-                        
-                    default: break;
-                }
                 
-                // Change the font's color to back to black
-                textField1.setForeground(Color.black);
-                textField2.setForeground(Color.black);
-                textField3.setForeground(Color.black);
-                textField4.setForeground(Color.black);
-                textField5.setForeground(Color.black);
+                // Generating keys with a big maximum value can take a while,
+                // so do it in the background
+                progressBar.setIndeterminate(true);
+                startWorker(new KeyWorker(selectedAlgorithm));
             }
         });
     }
@@ -591,10 +585,21 @@ public class Cryptosystem extends JFrame {
             }
         });
         
-        // Add sub-panel and submit button into center panel
+        // Cancel the running encryption, decryption or key generation
+        cancelButton = new JButton("Cancel");
+        cancelButton.setEnabled(false);
+        cancelButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                if (worker != null)
+                    worker.cancel(true);
+            }
+        });
+        
+        // Add sub-panel, submit and cancel buttons into center panel
         setComponent(centerPanel, new JLabel(" "), 0, 0, 5, 1, 1, 2, 2, null);
         setComponent(centerPanel, subPanel, 0, 1, 5, 3, 1, 2, 2, new Insets(15,0,0,0));
-        setComponent(centerPanel, submitButton, 0, 4, 2, 1, 0, 0, 0, new Insets(5,5,10,15));
+        setComponent(centerPanel, submitButton, 0, 4, 2, 1, 0, 0, 0, new Insets(5,5,10,5));
+        setComponent(centerPanel, cancelButton, 2, 4, 2, 1, 0, 0, 0, new Insets(5,0,10,15));
     }
     
     /**
@@ -618,23 +623,27 @@ public class Cryptosystem extends JFrame {
         setComponent(subPanel, resultLabel, 0, 0, 1, 1, 0, 0, 0, new Insets(0,5,0,0));
         setComponent(subPanel, scrollpane, 0, 1, 5, 3, 1, 2, 2, null);
         
-        // Add sub-panel and submit button into center panel
+        // Progress of the running work
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        progressBar.setString("");
+        
+        // Add sub-panel and progress bar into right panel
         setComponent(rightPanel, new JLabel(" "), 0, 0, 5, 1, 1, 2, 2, null);
         setComponent(rightPanel, subPanel, 0, 1, 5, 3, 1, 2, 2, new Insets(0,0,0,5));
-        setComponent(rightPanel, new JLabel(" "), 0, 4, 2, 1, 0, 0, 0, new Insets(12,5,10,15));
+        setComponent(rightPanel, progressBar, 0, 4, 5, 1, 1, 0, 2, new Insets(9,5,7,5));
     }
     
     /**
      * Perform the selected algorithm, either encryption or decryption based on 
-     * user selected.
+     * user selected. The work is done in the background, and the result is
+     * shown as the blocks are done.
      */
     private void performAlgorithm() {
         
         // Get user input
         String userInput = inputTextArea.getText();
         
-        String result;
-        
         Algorithm algorithm;
         
         // Determine which algorithm and then pass all the keys to it
@@ -658,11 +667,66 @@ public class Cryptosystem extends JFrame {
         }
         
         // Perform either encrypt or decrypt the message
-        result = encryptRadioButton.isSelected() ? 
-                algorithm.encrypt(userInput) : algorithm.decrypt(userInput);
-      
-        // Show the result on the text area
-        resultTextArea.setText(result == null ? "Invalid input" : result);
+        resultTextArea.setText("");
+        progressBar.setIndeterminate(false);
+        startWorker(new AlgorithmWorker(algorithm, userInput, 
+                encryptRadioButton.isSelected()));
+    }
+    
+    /**
+     * Start the given work in the background. The controls that change the
+     * keys or start another work are disabled until the work has stopped.
+     * @param newWorker the work to be started
+     */
+    private void startWorker(SwingWorker<?, ?> newWorker) {
+        
+        worker = newWorker;
+        
+        setWorking(true);
+        progressBar.setValue(0);
+        progressBar.setString(null);
+        
+        worker.addPropertyChangeListener(new PropertyChangeListener() {
+            public void propertyChange(PropertyChangeEvent e) {
+                if ("progress".equals(e.getPropertyName()))
+                    progressBar.setValue((Integer) e.getNewValue());
+            }
+        });
+        
+        worker.execute();
+    }
+    
+    /**
+     * Enable the controls again once the given work has really stopped. A
+     * cancelled work may still be running until it notices, and it must not
+     * share the keys with the next work.
+     * @param stoppedWorker the work that has stopped
+     */
+    private void finishWorker(final SwingWorker<?, ?> stoppedWorker) {
+        
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                if (worker == stoppedWorker) {
+                    worker = null;
+                    setWorking(false);
+                    progressBar.setIndeterminate(false);
+                }
+            }
+        });
+    }
+    
+    /**
+     * Enable or disable the controls while a work is running.
+     * @param working true if a work is running
+     */
+    private void setWorking(boolean working) {
+        
+        submitButton.setEnabled(!working);
+        newKeyButton.setEnabled(!working);
+        encryptRadioButton.setEnabled(!working);
+        decryptRadioButton.setEnabled(!working);
+        algorithmSelectionList.setEnabled(!working);
+        cancelButton.setEnabled(working);
     }
     
     /**
@@ -800,6 +864,208 @@ public class Cryptosystem extends JFrame {
         parent.add(child, c);
     }
 
+    /**
+     * A work that encrypts or decrypts the input in the background. The
+     * input is given to the algorithm in chunks, so the result is updated
+     * as the blocks are done, and a cancel stops the work before the next
+     * chunk. The progress is the number of blocks done out of the blocks
+     * of the input.
+     */
+    private class AlgorithmWorker extends SwingWorker<Void, String> {
+        
+        private final Algorithm algorithm;
+        private final String input;
+        private final boolean encrypt;
+        
+        private boolean failed;     // true if the result shows an error
+        
+        private int blocks;         // number of blocks in the input
+        private int blocksDone;     // number of blocks written so far
+        
+        AlgorithmWorker(Algorithm algorithm, String input, boolean encrypt) {
+            this.algorithm = algorithm;
+            this.input = input;
+            this.encrypt = encrypt;
+        }
+        
+        protected Void doInBackground() throws IOException {
+            
+            try {
+                blocks = algorithm.countBlocks(input, encrypt);
+                
+                Reader reader = new ChunkReader();
+                Writer writer = new Writer() {
+                    public void write(char[] buffer, int offset, int length) {
+                        
+                        if (length == 0)
+                            return;
+                        
+                        // Each block is written on its own line
+                        for (int i = offset; i < offset + length; i++)
+                            if (buffer[i] == '\n')
+                                blocksDone++;
+                        
+                        publish(new String(buffer, offset, length));
+                        
+                        setProgress((int) Math.min(100, 100L * blocksDone / Math.max(blocks, 1)));
+                    }
+                    
+                    public void flush() {
+                    }
+                    
+                    public void close() {
+                    }
+                };
+                
+                if (encrypt)
+                    algorithm.encrypt(reader, writer);
+                else
+                    algorithm.decrypt(reader, writer);
+                
+                setProgress(100);
+                
+                return null;
+            } finally {
+                finishWorker(this);
+            }
+        }
+        
+        protected void process(List<String> chunks) {
+            
+            if (isCancelled() || failed)
+                return;
+            
+            for (String chunk : chunks)
+                resultTextArea.append(chunk);
+        }
+        
+        protected void done() {
+            
+            try {
+                get();
+                progressBar.setString("Done");
+            } catch (CancellationException e) {
+                progressBar.setString("Cancelled");
+            } catch (InterruptedException e) {
+                progressBar.setString("Cancelled");
+            } catch (ExecutionException e) {
+                
+                // Show the error instead of the blocks before it
+                String error = e.getCause().getMessage();
+                
+                failed = true;
+                resultTextArea.setText(error == null ? "Invalid input" : error);
+                progressBar.setString("Failed");
+            }
+        }
+        
+        /**
+         * A reader of the input that gives at most CHUNK_SIZE characters at
+         * once, and stops once the work is cancelled.
+         */
+        private class ChunkReader extends Reader {
+            
+            private int position;   // number of characters read
+            
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                
+                if (isCancelled() || Thread.currentThread().isInterrupted())
+                    throw new InterruptedIOException("Cancelled");
+                
+                if (position >= input.length())
+                    return -1;
+                
+                int count = Math.min(Math.min(length, CHUNK_SIZE), 
+                        input.length() - position);
+                
+                input.getChars(position, position + count, buffer, offset);
+                position += count;
+                
+                return count;
+            }
+            
+            public void close() {
+            }
+        }
+    }
+    
+    /**
+     * A work that generates new keys for an algorithm in the background,
+     * and shows them once they are all generated.
+     */
+    private class KeyWorker extends SwingWorker<String[], Void> {
+        
+        private final int algorithm;
+        
+        KeyWorker(int algorithm) {
+            this.algorithm = algorithm;
+        }
+        
+        protected String[] doInBackground() {
+            
+            try {
+                switch (algorithm) {
+                    case ELGAMAL:
+                        eg.generateAllKeys();
+                        return new String[] {eg.getA(), eg.getK(), eg.getP(), 
+                                             eg.getG(), eg.getR()};
+                        
+                    case RSA:
+                        rsa.generateAllKeys();
+                        return new String[] {rsa.getP(), rsa.getQ(), rsa.getD(), 
+                                             rsa.getN(), rsa.getE()};
+                        
+                    case KNAPSACK:
+                        ks.generateAllKeys();
+                        return new String[] {ks.getM(), ks.getA(), ks.getS(), 
+                                             ks.getW()};
+                        
+                    default: 
+                        return new String[0];
+                }
+            } finally {
+                finishWorker(this);
+            }
+        }
+        
+        protected void done() {
+            
+            String[] keys;
+            
+            try {
+                keys = get();
+            } catch (CancellationException e) {
+                progressBar.setString("Cancelled");
+                return;
+            } catch (InterruptedException e) {
+                progressBar.setString("Cancelled");
+                return;
+            } catch (ExecutionException e) {
+                
+                // Keep the old keys and show why no key was generated
+                String error = e.getCause().getMessage();
+                
+                progressBar.setString("Failed");
+                JOptionPane.showMessageDialog(null, 
+                        error == null ? "Unable to generate the keys" : error, 
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            
+            JTextField[] textFields = {textField1, textField2, textField3, 
+                                       textField4, textField5};
+            
+            for (int i = 0; i < keys.length; i++)
+                textFields[i].setText(keys[i]);
+            
+            // Change the font's color to back to black
+            for (JTextField textField : textFields)
+                textField.setForeground(Color.black);
+            
+            progressBar.setString("Done");
+        }
+    }
+
     private static final int MASK = Toolkit.getDefaultToolkit().getMenuShortcutKeyMask();
 
     public static void main(String[] args) {
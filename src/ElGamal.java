@@ -6,40 +6,73 @@ import java.util.Random;
  * decrypting a cipher text. The ElGamal algorithm will contain a set of public 
  * key, (p, g, r), and a set of private key, a and k.
  * 
+ * This algorithm will encrypt two characters at once, and ONLY encrypt 
+ * alphabetic letters. The encryption will append an 'X' to the given message
+ * if the given message has an odd in length. The cipher text is in the format
+ * of "1234, 5678".
+ * 
  * @author Su Khai Koh
  */
 
-public class ElGamal implements Algorithm {
+public class ElGamal extends BlockAlgorithm<ElGamalKey> implements AutoCloseable {
 
-    private BigInteger a;      // secret key
-    private BigInteger p;      // a large prime number
-    private BigInteger g;      // a random number that is less than p
-    private BigInteger r;      // g^a
-    private BigInteger k;      // a random number between 0 and p
-    
     private BigInteger maxValue;    // max value of certain keys
     
+    // True to precompute pairs of (g^k, r^k) for random k
+    private volatile boolean precompute;
+    
+    // Held while the keys change or the ephemeral keys are started, so that
+    // the ephemeral keys are never started for keys that were replaced
+    private final Object keyLock = new Object();
+    
     /**
      * Default constructor. Set the maximum value to 10000 and generate all
      * public and private keys.
      */
     public ElGamal() {
+        this("10000");
+    }
+    
+    /**
+     * Create an ElGamal algorithm and generate all public and private keys
+     * for the given maximum value.
+     * @param maxValue the maximum value for certain keys
+     */
+    public ElGamal(String maxValue) {
         
-        maxValue = new BigInteger("10000");
+        super(2, 2);
+        
+        this.maxValue = new BigInteger(maxValue);
         
         generateAllKeys();
     }
     
+    /**
+     * Create an ElGamal algorithm with the given keys.
+     * @param key the keys
+     */
+    public ElGamal(ElGamalKey key) {
+        
+        super(2, 2);
+        
+        maxValue = new BigInteger("10000");
+        
+        setKey(key);
+    }
+    
     /**
      * Generate the private keys, a and k, and the public keys, p, g, and r.
      */
     public void generateAllKeys() {
         
-        generateA();
-        generateP();        
-        generateK();
-        generateG();
-        generateR();
+        Random random = getRandomSource().getRandom(RandomSource.KEY);
+        
+        BigInteger a = BigInteger.valueOf(random.nextInt(Integer.parseInt(maxValue.toString())));
+        BigInteger p = PrimePool.getPrime(1, maxValue.longValue());
+        BigInteger k = randomK(p, random);
+        BigInteger g = randomK(p, random);
+        
+        setKey(new ElGamalKey(a, k, p, g, g.modPow(a, p)));
     }
     
     /**
@@ -48,11 +81,13 @@ public class ElGamal implements Algorithm {
      */
     public void generateA() {
         
-        Random random = new Random();
+        Random random = getRandomSource().getRandom(RandomSource.KEY);
        
         int number = random.nextInt(Integer.parseInt(maxValue.toString()));
         
-        a = new BigInteger(Integer.toString(number)); 
+        ElGamalKey key = getKey();
+        
+        setKey(key.withPrivateKeys(BigInteger.valueOf(number), key.getK()));
     }
     
     /**
@@ -60,149 +95,268 @@ public class ElGamal implements Algorithm {
      * The p will be range from 1 to the given max value.
      */
     public void generateP() {
-        p = Prime.getPrime(1, maxValue.longValue());
+        ElGamalKey key = getKey();
+        setKey(new ElGamalKey(key.getA(), key.getK(), PrimePool.getPrime(1, maxValue.longValue()), 
+                              key.getG(), key.getR()));
     }
     
     /**
      * Generate the public key g, where g is a random number between 1 and p.
      */
     public void generateG() {
-        
-        Random random = new Random();
-        
-        while (true) {
-            
-            long n = 1 + ((long) (random.nextDouble() * p.doubleValue()));
-            
-            g = new BigInteger(Long.toString(n));
-            
-            if (g.compareTo(p) < 0) 
-                break;
-        }
+        ElGamalKey key = getKey();
+        setKey(new ElGamalKey(key.getA(), key.getK(), key.getP(), 
+                              randomK(key.getP(), getRandomSource().getRandom(RandomSource.KEY)), 
+                              key.getR()));
     }
     
     /**
      * Generate one of the public key, r, where r = g^a (mod p)
      */
     public void generateR() {
-        r = g.modPow(a, p);
+        ElGamalKey key = getKey();
+        setKey(new ElGamalKey(key.getA(), key.getK(), key.getP(), key.getG(), 
+                              key.getG().modPow(key.getA(), key.getP())));
     }
     
     /**
      * Generate a random number k, where 0 < k < p
      */
     public void generateK() {
-        
-        Random random = new Random();
+        ElGamalKey key = getKey();
+        setKey(key.withPrivateKeys(key.getA(), 
+                randomK(key.getP(), getRandomSource().getRandom(RandomSource.KEY))));
+    }
+    
+    /**
+     * Get a random number k, where 0 < k < p
+     * @param p the public key p
+     * @param random the random number generator
+     * @return a random number between 0 and p
+     */
+    static BigInteger randomK(BigInteger p, Random random) {
         
         while (true) {
             
             long n = 1 + ((long) (random.nextDouble() * p.doubleValue()));
             
-            k = new BigInteger(Long.toString(n));
+            BigInteger k = new BigInteger(Long.toString(n));
             
             if (k.compareTo(p) < 0) 
-                break;
+                return k;
         }
     }
     
-    /** 
-     * Encrypt the given message by using ElGamal algorithm. This algorithm
-     * will encrypt two characters at once, and ONLY encrypt alphabetic letters.
-     * This encryption will append an 'X' to the given message if the given 
-     * message has an odd in length.
-     * @param message the message to be encrypted
-     * @return the cipher text, in the format of "1234, 5678"
+    /**
+     * Replace the current keys. The ephemeral keys of the old public keys
+     * are no longer precomputed.
+     * @param key the new keys
      */
-    public String encrypt(String message) {
-                        
-        // Remove all non-alphanumeric characters
-        message = message.replaceAll("[^a-zA-Z0-9]", "");
-        
-        boolean isOdd = (message.length() & 1) == 1 ? true : false;
-        
-        // Append an 'X' if the message has an odd length
-        if (isOdd)
-            message = message + 'X';
-        
-        boolean randomK = false;
-        
-        // Randomize k in each block if no k was given
-        if (k == null)
-            randomK = true;
-       
-        StringBuilder result = new StringBuilder();
+    public void setKey(ElGamalKey key) {
         
-        int i = 0;
-        while (i < message.length()) {
+        synchronized (keyLock) {
             
-            // Get two characters at once
-            String str = message.substring(i, i+=2);
+            ElGamalKey oldKey = getKey();
             
-            String number = Convert.stringToNumber(str);
+            super.setKey(key);
             
-            if (!number.matches("[0-9]+")) 
-                return "Invalid message input.\n"+
-                       "Message must contains only alphabetic letters.";
+            if (oldKey != null && oldKey.getEncryption() != key.getEncryption())
+                oldKey.getEncryption().stopEphemeralKeys();
+        }
+    }
+    
+    /**
+     * Turn on or off the precomputation of ephemeral keys. If it is on and no
+     * k was given, a background thread keeps computing (g^k, r^k) for random
+     * k, so that encryption only needs one multiplication for each block.
+     * @param precompute true to turn on the precomputation
+     */
+    public void setPrecompute(boolean precompute) {
+        
+        synchronized (keyLock) {
             
-            if (randomK)
-                generateK();
+            this.precompute = precompute;
             
-            // Encrypt format: (firstPart, secondPart)
-            BigInteger firstPart = g.modPow(k, p);
-            BigInteger secondPart = r.modPow(k, p);
-            secondPart = secondPart.multiply(new BigInteger(number));
-            secondPart = secondPart.mod(p);
+            if (!precompute)
+                getKey().getEncryption().stopEphemeralKeys();
+        }
+    }
+    
+    /**
+     * Stop precomputing the ephemeral keys and stop the background thread.
+     * The algorithm can still be used, and the precomputation can be turned
+     * on again.
+     */
+    public void close() {
+        setPrecompute(false);
+    }
+    
+    /**
+     * Check whether the precomputation of ephemeral keys is on.
+     * @return true if the precomputation is on
+     */
+    public boolean isPrecompute() {
+        return precompute;
+    }
+    
+    /**
+     * Prepare the precomputed tables and the ephemeral keys before 
+     * encrypting a message.
+     * @param key the keys
+     */
+    protected void prepareEncrypt(ElGamalKey key) {
+        
+        // Build the tables of g and r once for the public keys
+        key.getEncryption().buildTables();
+        
+        if (key.getK() != null || !precompute)
+            return;
+        
+        // Start precomputing the ephemeral keys for the current keys only,
+        // so that the background thread is stopped when the keys change
+        synchronized (keyLock) {
+            if (precompute && key == getKey())
+                key.getEncryption().startEphemeralKeys(getRandomSource());
+        }
+    }
+    
+    /**
+     * Each block only depends on the public keys and its own k, which comes
+     * from the given k, the random source of the thread or the queue of
+     * ephemeral keys, so the blocks of a large message can be encrypted in
+     * parallel.
+     * @return true
+     */
+    protected boolean isParallelEncrypt() {
+        return true;
+    }
+    
+    /** 
+     * Encrypt one block of the message, where the cipher text block is
+     * (g^k (mod p), m * r^k (mod p)).
+     * @param key the keys
+     * @param value the number form of the two characters of the block
+     * @param block the cipher text block to be filled in
+     */
+    protected void encryptBlock(ElGamalKey key, int value, BigInteger[] block) {
+        
+        ElGamalKey.Encryption encryption = key.getEncryption();
+        EphemeralKeyQueue ephemeralKeys = encryption.getEphemeralKeys();
+        
+        BigInteger k = key.getK();
+        BigInteger firstPart, secondPart;
+        
+        // Encrypt format: (firstPart, secondPart)
+        if (k == null && precompute && ephemeralKeys != null) {
+            BigInteger[] pair = ephemeralKeys.take();
+            firstPart = pair[0];
+            secondPart = pair[1];
+        } else {
+            // Randomize k in each block if no k was given
+            if (k == null)
+                k = randomK(key.getP(), getRandomSource().getRandom(RandomSource.NONCE));
             
-            result.append(firstPart + ", " + secondPart + "\n");
+            firstPart = encryption.powG(k);
+            secondPart = encryption.powR(k);
+        }
+        
+        LongModulus pModulus = key.getPModulus();
+        
+        // Small keys, calculate on longs
+        if (pModulus != null) {
+            secondPart = BigInteger.valueOf(pModulus.multiply(
+                    pModulus.reduce(secondPart), pModulus.reduce(value)));
+        } else {
+            secondPart = secondPart.multiply(BigInteger.valueOf(value));
+            secondPart = secondPart.mod(key.getP());
         }
         
-        return result.toString();
+        block[0] = firstPart;
+        block[1] = secondPart;
+    }
+    
+    /**
+     * Calculate the decryption exponent of the keys before decrypting a 
+     * cipher text, if it has not been calculated yet.
+     * @param key the keys
+     */
+    protected void prepareDecrypt(ElGamalKey key) {
+        key.getDecryption();
+    }
+    
+    /**
+     * Each block only depends on the private keys, so the blocks of a large
+     * cipher text can be decrypted in parallel.
+     * @return true
+     */
+    protected boolean isParallelDecrypt() {
+        return true;
     }
     
     /**
-     * Decrypt the given cipher text by using ElGamal algorithm. The cipher
-     * text should only contain numeric characters.
-     * @param cipherText the text to be decoded
-     * @return the original message in the form of two characters per block
+     * Decrypt one block of the cipher text, where m = c2 * (c1^a)^-1 (mod p).
+     * @param key the keys
+     * @param block the cipher text block, (c1, c2)
+     * @param letters the buffer to be filled in with the two characters of
+     *        the block
      */
-    public String decrypt(String cipherText) {
+    protected void decryptBlock(ElGamalKey key, BigInteger[] block, char[] letters) {
         
-        cipherText = cipherText.trim().replaceAll("[^a-zA-Z0-9,\\s]", "");
-        cipherText = cipherText.replaceAll(",", " ");
+        ElGamalKey.Decryption decryption = key.getDecryption();
         
-        String[] texts = cipherText.split("\\s+");
+        BigInteger firstPart = block[0];
         
-        // If the given cipherText has invalid format, then return null
-        if ((texts.length & 1) == 1)
-            return "Invalid cipher text format.\n"+
-                   "Format must be:\n"+
-                   "    (1234, 5678)";
+        // The shared secret inverse, (c1^a)^-1 (mod p)
+        BigInteger powerA = decryption.getSharedSecret(firstPart);
         
-        // To store the result
-        StringBuilder output = new StringBuilder();
+        if (powerA == null) {
+            powerA = sharedSecretInverse(key, decryption, firstPart);
+            decryption.putSharedSecret(firstPart, powerA);
+        }
         
-        for (int i = 0; i < texts.length; i++) {
-            
-            String firstPart = texts[i];
-            String secondPart = texts[++i];
-            
-            // If any given string contain non numeric character, then return null
-            if (!firstPart.matches("[0-9]+") || !secondPart.matches("[0-9]+"))
-                return "Invalid cipher text input.\n"+
-                       "Cipher text must contains only numeric letters.";
-            
+        LongModulus pModulus = key.getPModulus();
+        BigInteger result;
+        
+        // Small keys, calculate on longs
+        if (pModulus != null) {
+            result = BigInteger.valueOf(pModulus.multiply(
+                    pModulus.reduce(block[1]), pModulus.reduce(powerA)));
+        } else {
+            result = block[1].multiply(powerA);
+            result = result.mod(key.getP());
+        }
+        
+        // Convert the result from number to alphabetic letters
+        Convert.numberToChars(result, letters, 0);
+    }
+    
+    /**
+     * Calculate the inverse of the shared secret, (c1^a)^-1 (mod p), which
+     * is equal to c1^(p-1-a) (mod p) by Fermat's little theorem. This only 
+     * needs one exponentiation instead of an inverse and an exponentiation.
+     * @param key the keys
+     * @param decryption the values for decryption of the keys
+     * @param c1 the first part of a cipher text block, g^k (mod p)
+     * @return the inverse of the shared secret
+     */
+    private static BigInteger sharedSecretInverse(ElGamalKey key, 
+            ElGamalKey.Decryption decryption, BigInteger c1) {
+        
+        BigInteger p = key.getP();
+        
+        // c1 has no inverse, use (c1^(p-2))^a (mod p) as it was
+        if (decryption.exponent == null || c1.mod(p).signum() == 0) {
             BigInteger pMinus2 = p.subtract(new BigInteger("2"));
-            BigInteger gPowerK = new BigInteger(firstPart).modPow(pMinus2, p);
-            BigInteger powerA = gPowerK.modPow(a, p);
-            BigInteger result = new BigInteger(secondPart).multiply(powerA);
-            result = result.mod(p);
-            
-            // Convert the result from number to alphabetic letters
-            output.append(Convert.numberToString(result.toString()) + "\n");
+            BigInteger gPowerK = c1.modPow(pMinus2, p);
+            return gPowerK.modPow(key.getA(), p);
         }
         
-        return output.toString();
+        LongModulus pModulus = key.getPModulus();
+        
+        if (pModulus != null)
+            return BigInteger.valueOf(pModulus.pow(pModulus.reduce(c1), decryption.exponent));
+        
+        return c1.modPow(decryption.exponent, p);
     }
     
     /**
@@ -224,11 +378,12 @@ public class ElGamal implements Algorithm {
     /**
      * Set the private keys for ElGamal algorithm.
      * @param a the private key a, where a is a random number between 1 and maximum value
-     * @param k the private key k, where k is a random number between 0 and p
+     * @param k the private key k, where k is a random number between 0 and p,
+     *        or empty for a random k in each block
      */
     public void setPrivateKeys(String a, String k) {
-        this.a = new BigInteger(a);
-        this.k = k.trim().isEmpty() ? null : new BigInteger(k);
+        setKey(getKey().withPrivateKeys(new BigInteger(a), 
+                k.trim().isEmpty() ? null : new BigInteger(k)));
     }
     
     /**
@@ -238,9 +393,16 @@ public class ElGamal implements Algorithm {
      * @param r the public key r, where r = g^a (mod p)
      */
     public void setPublicKeys(String p, String g, String r) {
-        this.p = new BigInteger(p);
-        this.g = new BigInteger(g);
-        this.r = new BigInteger(r);
+        
+        BigInteger newP = new BigInteger(p);
+        BigInteger newG = new BigInteger(g);
+        BigInteger newR = new BigInteger(r);
+        
+        ElGamalKey key = getKey();
+        
+        // Keep the precomputed tables if the keys did not change
+        if (!key.hasPublicKeys(newP, newG, newR))
+            setKey(new ElGamalKey(key.getA(), key.getK(), newP, newG, newR));
     }
     
     /**
@@ -248,15 +410,16 @@ public class ElGamal implements Algorithm {
      * @return the private key a
      */
     public String getA() {
-        return a.toString();
+        return getKey().getA().toString();
     }
     
     /**
      * Get the private key k.
-     * @return the private key k
+     * @return the private key k, or empty if k is random in each block
      */
     public String getK() {
-        return k.toString();
+        BigInteger k = getKey().getK();
+        return k == null ? "" : k.toString();
     }
     
     /**
@@ -264,7 +427,7 @@ public class ElGamal implements Algorithm {
      * @return the public key p
      */
     public String getP() {
-        return p.toString();
+        return getKey().getP().toString();
     }
     
     /**
@@ -272,7 +435,7 @@ public class ElGamal implements Algorithm {
      * @return the public key g
      */
     public String getG() {
-        return g.toString();
+        return getKey().getG().toString();
     }
     
     /**
@@ -280,6 +443,6 @@ public class ElGamal implements Algorithm {
      * @return the public key r
      */
     public String getR() {
-        return r.toString();
+        return getKey().getR().toString();
     }
 }
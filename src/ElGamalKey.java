@@ -0,0 +1,298 @@
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An immutable set of ElGamal keys, the private keys a and k, and the public
+ * keys p, g and r. If k is not given, a random k is used in each block. A
+ * key can be shared by any number of threads.
+ *
+ * The values derived from a key, the precomputed tables of g and r, the
+ * exponent for decryption and the shared secrets, are calculated on first
+ * use and kept with the key. A key made from another key with only new
+ * private keys shares the values of the public keys.
+ *
+ * @author Su Khai Koh
+ */
+public final class ElGamalKey {
+
+    private final BigInteger a;     // secret key
+    private final BigInteger k;     // random number between 0 and p, or null
+    private final BigInteger p;     // a large prime number
+    private final BigInteger g;     // a random number that is less than p
+    private final BigInteger r;     // g^a
+
+    // Modulo p on longs, null if p is too big for a long
+    private final LongModulus pModulus;
+
+    private final Encryption encryption;
+
+    // Values for decryption, calculated on the first decryption
+    private volatile Decryption decryption;
+
+    // Certainty used to check p is a prime before using Fermat's theorem
+    private static final int PRIME_CERTAINTY = 20;
+
+    // Maximum number of c1 values remembered for a key
+    static final int MEMO_SIZE = 64;
+
+    /**
+     * Create a set of keys.
+     * @param a the private key a
+     * @param k the private key k, where 0 < k < p, or null for a random k
+     *        in each block
+     * @param p the public key p, where p is a prime number
+     * @param g the public key g, where g is a random number between 1 and p
+     * @param r the public key r, where r = g^a (mod p)
+     */
+    public ElGamalKey(BigInteger a, BigInteger k, BigInteger p, BigInteger g, BigInteger r) {
+        this(a, k, p, g, r, null, null);
+    }
+
+    private ElGamalKey(BigInteger a, BigInteger k, BigInteger p, BigInteger g, BigInteger r,
+                       Encryption encryption, Decryption decryption) {
+        this.a = a;
+        this.k = k;
+        this.p = p;
+        this.g = g;
+        this.r = r;
+
+        pModulus = LongModulus.of(p);
+
+        this.encryption = encryption != null ? encryption : new Encryption();
+        this.decryption = decryption;
+    }
+
+    /**
+     * Get a set of keys with the same public keys and the given private
+     * keys. The new keys share the values derived from the public keys.
+     * @param a the private key a
+     * @param k the private key k, or null for a random k in each block
+     * @return the new keys, or these keys if nothing changed
+     */
+    public ElGamalKey withPrivateKeys(BigInteger a, BigInteger k) {
+
+        if (a.equals(this.a) && (k == null ? this.k == null : k.equals(this.k)))
+            return this;
+
+        // The exponent for decryption only depends on a and p
+        return new ElGamalKey(a, k, p, g, r, encryption, a.equals(this.a) ? decryption : null);
+    }
+
+    /**
+     * Get the private key a.
+     * @return the private key a
+     */
+    public BigInteger getA() {
+        return a;
+    }
+
+    /**
+     * Get the private key k.
+     * @return the private key k, or null if k is random in each block
+     */
+    public BigInteger getK() {
+        return k;
+    }
+
+    /**
+     * Get the public key p.
+     * @return the public key p
+     */
+    public BigInteger getP() {
+        return p;
+    }
+
+    /**
+     * Get the public key g.
+     * @return the public key g
+     */
+    public BigInteger getG() {
+        return g;
+    }
+
+    /**
+     * Get the public key r.
+     * @return the public key r
+     */
+    public BigInteger getR() {
+        return r;
+    }
+
+    /**
+     * Check whether the public keys are the same as the given keys.
+     * @param p the public key p
+     * @param g the public key g
+     * @param r the public key r
+     * @return true if all the public keys are equal
+     */
+    public boolean hasPublicKeys(BigInteger p, BigInteger g, BigInteger r) {
+        return this.p.equals(p) && this.g.equals(g) && this.r.equals(r);
+    }
+
+    /**
+     * Get the modulo p on longs.
+     * @return the modulo p, or null if p is too big for a long
+     */
+    LongModulus getPModulus() {
+        return pModulus;
+    }
+
+    /**
+     * Get the values of the public keys for encryption.
+     * @return the values for encryption
+     */
+    Encryption getEncryption() {
+        return encryption;
+    }
+
+    /**
+     * Get the values for decryption, calculating them on the first call. Two
+     * threads may both calculate them, but they get the same values.
+     * @return the values for decryption
+     */
+    Decryption getDecryption() {
+
+        Decryption values = decryption;
+
+        if (values == null)
+            decryption = values = new Decryption();
+
+        return values;
+    }
+
+    /**
+     * The values of the public keys for encryption, the precomputed tables
+     * of g and r and the queue of ephemeral keys. They are shared by all the
+     * keys with the same public keys.
+     */
+    final class Encryption {
+
+        // Precomputed tables for g^k (mod p) and r^k (mod p)
+        private volatile FixedBaseTable gTable;
+        private volatile FixedBaseTable rTable;
+
+        // Precomputed pairs of (g^k, r^k) for random k, null if not started
+        private volatile EphemeralKeyQueue ephemeralKeys;
+
+        /**
+         * Build the tables of g and r if p is small enough for them, and
+         * they have not been built yet.
+         */
+        void buildTables() {
+
+            if (rTable != null || p.bitLength() > FixedBaseTable.MAX_MODULUS_BITS)
+                return;
+
+            gTable = new FixedBaseTable(g, p, p.bitLength());
+            rTable = new FixedBaseTable(r, p, p.bitLength());
+        }
+
+        /**
+         * Calculate g^k (mod p), with the table of g if it is built.
+         * @param k the exponent
+         * @return g^k (mod p)
+         */
+        BigInteger powG(BigInteger k) {
+
+            FixedBaseTable table = gTable;
+
+            return table != null ? table.pow(k) : g.modPow(k, p);
+        }
+
+        /**
+         * Calculate r^k (mod p), with the table of r if it is built.
+         * @param k the exponent
+         * @return r^k (mod p)
+         */
+        BigInteger powR(BigInteger k) {
+
+            FixedBaseTable table = rTable;
+
+            return table != null ? table.pow(k) : r.modPow(k, p);
+        }
+
+        /**
+         * Get the queue of ephemeral keys.
+         * @return the queue, or null if it is not started
+         */
+        EphemeralKeyQueue getEphemeralKeys() {
+            return ephemeralKeys;
+        }
+
+        /**
+         * Start precomputing the ephemeral keys if it is not started. The
+         * queue uses the tables of g and r, which are built first.
+         * @param randomSource the source of the random k
+         */
+        synchronized void startEphemeralKeys(RandomSource randomSource) {
+
+            if (ephemeralKeys != null)
+                return;
+
+            buildTables();
+
+            ephemeralKeys = new EphemeralKeyQueue(p, g, r, gTable, rTable,
+                    EphemeralKeyQueue.DEFAULT_CAPACITY, randomSource);
+        }
+
+        /**
+         * Stop precomputing the ephemeral keys.
+         */
+        synchronized void stopEphemeralKeys() {
+            if (ephemeralKeys != null) {
+                ephemeralKeys.stop();
+                ephemeralKeys = null;
+            }
+        }
+    }
+
+    /**
+     * The values for decryption, the exponent (p-1-a) mod (p-1) and the
+     * shared secrets of the c1 values seen most recently.
+     */
+    final class Decryption {
+
+        // Exponent for decryption, null if p is not a prime
+        final BigInteger exponent;
+
+        // Shared secrets of the last MEMO_SIZE c1 values that were used,
+        // the least recently used one is dropped to make room
+        private final Map<BigInteger, BigInteger> memo = Collections.synchronizedMap(
+                new LinkedHashMap<BigInteger, BigInteger>(MEMO_SIZE * 2, 0.75f, true) {
+
+                    private static final long serialVersionUID = 1L;
+
+                    protected boolean removeEldestEntry(Map.Entry<BigInteger, BigInteger> eldest) {
+                        return size() > MEMO_SIZE;
+                    }
+                });
+
+        Decryption() {
+
+            // Fermat's little theorem only holds if p is a prime
+            exponent = p.isProbablePrime(PRIME_CERTAINTY) ?
+                    a.negate().mod(p.subtract(BigInteger.ONE)) : null;
+        }
+
+        /**
+         * Get the inverse of the shared secret of c1 if it was seen before.
+         * @param c1 the first part of a cipher text block
+         * @return the inverse of the shared secret, or null
+         */
+        BigInteger getSharedSecret(BigInteger c1) {
+            return memo.get(c1);
+        }
+
+        /**
+         * Remember the inverse of the shared secret of c1, in place of the
+         * least recently used one if there are too many already.
+         * @param c1 the first part of a cipher text block
+         * @param secret the inverse of the shared secret
+         */
+        void putSharedSecret(BigInteger c1, BigInteger secret) {
+            memo.put(c1, secret);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A bounded queue of precomputed ephemeral keys for ElGamal encryption. A
+ * background thread keeps picking a random k and putting the pair
+ * (g^k mod p, r^k mod p) into the queue, so that the encryption only needs
+ * one multiplication for each block. If the queue is empty, the pair is
+ * computed on the calling thread instead.
+ *
+ * A queue belongs to one set of public keys, and has to be stopped when the
+ * keys change.
+ *
+ * @author Su Khai Koh
+ */
+public class EphemeralKeyQueue {
+
+    // Default number of pairs kept in the queue
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final BigInteger p;
+    private final BigInteger g;
+    private final BigInteger r;
+
+    // Precomputed tables of g and r, null if p is too big for the tables
+    private final FixedBaseTable gTable;
+    private final FixedBaseTable rTable;
+
+    private final BlockingQueue<BigInteger[]> pairs;
+
+    private final RandomSource randomSource;
+
+    private final Thread producer;
+
+    private volatile boolean stopped;
+
+    /**
+     * Create a queue for the given public keys and start filling it in the
+     * background.
+     * @param p the public key p, where p is a prime number
+     * @param g the public key g
+     * @param r the public key r, where r = g^a (mod p)
+     * @param gTable the precomputed table of g, or null to use modPow
+     * @param rTable the precomputed table of r, or null to use modPow
+     * @param capacity the maximum number of pairs kept in the queue
+     * @param randomSource the source of the random k
+     */
+    public EphemeralKeyQueue(BigInteger p, BigInteger g, BigInteger r,
+                             FixedBaseTable gTable, FixedBaseTable rTable, int capacity,
+                             RandomSource randomSource) {
+
+        this.p = p;
+        this.g = g;
+        this.r = r;
+
+        this.gTable = gTable;
+        this.rTable = rTable;
+        this.pairs = new ArrayBlockingQueue<BigInteger[]>(capacity);
+        this.randomSource = randomSource;
+
+        producer = new Thread(new Runnable() {
+            public void run() {
+                produce();
+            }
+        }, "elgamal-ephemeral-keys");
+
+        producer.setDaemon(true);
+        producer.setPriority(Thread.MIN_PRIORITY);
+        producer.start();
+    }
+
+    /**
+     * Take the next pair from the queue, or compute a new pair if the queue
+     * is empty.
+     * @return the pair in the format of {g^k mod p, r^k mod p}
+     */
+    public BigInteger[] take() {
+
+        BigInteger[] pair = pairs.poll();
+
+        return pair != null ? pair : nextPair(randomSource.getRandom(RandomSource.NONCE));
+    }
+
+    /**
+     * Stop the background thread. The pairs left in the queue can still be
+     * taken.
+     */
+    public void stop() {
+        stopped = true;
+        producer.interrupt();
+    }
+
+    /**
+     * Get the number of pairs waiting in the queue.
+     * @return the number of pairs in the queue
+     */
+    public int size() {
+        return pairs.size();
+    }
+
+    /**
+     * Keep filling up the queue until this queue is stopped.
+     */
+    private void produce() {
+
+        Random random = randomSource.getRandom(RandomSource.NONCE);
+
+        try {
+            while (!stopped)
+                pairs.put(nextPair(random));
+        } catch (InterruptedException e) {
+            // Stopped while waiting for space in the queue
+        }
+    }
+
+    /**
+     * Compute a new pair with a random k, where 0 < k < p.
+     * @param random the random number generator
+     * @return the pair in the format of {g^k mod p, r^k mod p}
+     */
+    private BigInteger[] nextPair(Random random) {
+
+        BigInteger k = ElGamal.randomK(p, random);
+
+        BigInteger gk = gTable != null ? gTable.pow(k) : g.modPow(k, p);
+        BigInteger rk = rTable != null ? rTable.pow(k) : r.modPow(k, p);
+
+        return new BigInteger[] {gk, rk};
+    }
+}
@@ -0,0 +1,115 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+/**
+ * A class that encrypts and decrypts whole files. The input file is mapped
+ * into memory region by region, and each mapped region is given to the
+ * algorithm as it is, which reads the bytes straight from the mapping and
+ * carries a block that is split between two regions over to the next one.
+ * The output is written through a buffered channel as the blocks are
+ * produced, so a file of any size is processed without holding the message
+ * or the cipher text in memory.
+ *
+ * The message file is in ASCII letters. The cipher text file is either in
+ * the text form, i.e "1234, 5678\n", or in the binary form of CipherCodec.
+ *
+ * @author Su Khai Koh
+ */
+public class FileCipher {
+
+    // Number of bytes of the input file mapped at once
+    public static final int REGION_SIZE = 1 << 26;
+
+    // Number of bytes written to the output file at once
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Algorithm algorithm;
+    private final boolean binary;
+
+    /**
+     * Create a file cipher with the given algorithm.
+     * @param algorithm the algorithm with its keys set up
+     * @param binary true if the cipher text file is in binary form, false
+     *        if it is in text form
+     */
+    public FileCipher(Algorithm algorithm, boolean binary) {
+        this.algorithm = algorithm;
+        this.binary = binary;
+    }
+
+    /**
+     * Encrypt a message file into a cipher text file. If the message is
+     * invalid, the cipher text file has the blocks before the error.
+     * @param message the message file
+     * @param cipherText the cipher text file, which will be overwritten
+     * @throws IOException if either file cannot be read or written
+     * @throws IllegalArgumentException if the message contains numbers
+     */
+    public void encrypt(File message, File cipherText) throws IOException {
+
+        FileInputStream input = new FileInputStream(message);
+        FileOutputStream output = new FileOutputStream(cipherText);
+
+        try {
+            OutputStream out = new BufferedOutputStream(
+                    Channels.newOutputStream(output.getChannel()), BUFFER_SIZE);
+
+            process(input.getChannel(), algorithm.encryptor(out, binary));
+        } finally {
+            input.close();
+            output.close();
+        }
+    }
+
+    /**
+     * Decrypt a cipher text file into a message file. If the cipher text is
+     * invalid, the message file has the blocks before the error.
+     * @param cipherText the cipher text file
+     * @param message the message file, which will be overwritten
+     * @throws IOException if either file cannot be read or written
+     * @throws IllegalArgumentException if the cipher text is invalid
+     */
+    public void decrypt(File cipherText, File message) throws IOException {
+
+        FileInputStream input = new FileInputStream(cipherText);
+        FileOutputStream output = new FileOutputStream(message);
+
+        try {
+            OutputStream out = new BufferedOutputStream(
+                    Channels.newOutputStream(output.getChannel()), BUFFER_SIZE);
+
+            process(input.getChannel(), algorithm.decryptor(out, binary));
+        } finally {
+            input.close();
+            output.close();
+        }
+    }
+
+    /**
+     * Give the input file to an encryption or a decryption region by region.
+     * Only one region is mapped at a time.
+     * @param channel the channel of the input file
+     * @param cipher the encryption or the decryption
+     * @throws IOException if a region cannot be mapped or the output cannot
+     *         be written
+     */
+    private static void process(FileChannel channel, BufferCipher cipher) throws IOException {
+
+        long size = channel.size();
+
+        for (long position = 0; position < size; position += REGION_SIZE) {
+
+            long length = Math.min(REGION_SIZE, size - position);
+
+            cipher.update(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+        }
+
+        cipher.finish();
+    }
+}
@@ -0,0 +1,186 @@
+import java.math.BigInteger;
+
+/**
+ * A precomputed table for raising a fixed base to many different exponents
+ * under the same modulo. The exponent is split into windows of a few bits,
+ * and the table holds base^(d * 2^(WINDOW*i)) (mod m) for every window i and
+ * every digit d, so an exponentiation only needs one multiplication for each
+ * window and no squaring at all.
+ *
+ * The table is worth building when the same base is raised to many
+ * exponents under a small modulo, such as g^k and r^k in ElGamal encryption.
+ *
+ * @author Su Khai Koh
+ */
+public class FixedBaseTable {
+
+    // Number of bits in each window
+    public static final int WINDOW = 4;
+
+    // Above this size of modulo, BigInteger.modPow is faster than the table
+    public static final int MAX_MODULUS_BITS = 64;
+
+    private final BigInteger base;
+    private final BigInteger modulus;
+    private final int maxBits;      // maximum bit length of the exponents
+
+    // table[i][d] = base^(d * 2^(WINDOW*i)) (mod m)
+    private final BigInteger[][] table;
+    
+    // The same table on longs if the modulo fits in a long, otherwise null
+    private final LongModulus longModulus;
+    private final long[][] longTable;
+
+    /**
+     * Build the table for the given base and modulo.
+     * @param base the fixed base
+     * @param modulus the modulo, which is positive
+     * @param maxBits the maximum bit length of the exponents that will use
+     *        the table, bigger exponents are still allowed but slower
+     */
+    public FixedBaseTable(BigInteger base, BigInteger modulus, int maxBits) {
+
+        this.base = base;
+        this.modulus = modulus;
+        this.maxBits = Math.max(maxBits, 1);
+
+        int windows = (this.maxBits + WINDOW - 1) / WINDOW;
+        int digits = 1 << WINDOW;
+
+        longModulus = LongModulus.of(modulus);
+
+        // Small modulo, build the table on longs instead
+        if (longModulus != null) {
+            table = null;
+            longTable = new long[windows][digits];
+
+            long power = longModulus.reduce(base);
+
+            for (int i = 0; i < windows; i++) {
+
+                longTable[i][0] = longModulus.reduce(1);
+                longTable[i][1] = power;
+
+                for (int d = 2; d < digits; d++)
+                    longTable[i][d] = longModulus.multiply(longTable[i][d - 1], power);
+
+                power = longModulus.multiply(longTable[i][digits - 1], power);
+            }
+
+            return;
+        }
+
+        longTable = null;
+        table = new BigInteger[windows][digits];
+
+        // base^(2^(WINDOW*i)) for the current window
+        BigInteger power = base.mod(modulus);
+
+        for (int i = 0; i < windows; i++) {
+
+            table[i][0] = BigInteger.ONE;
+            table[i][1] = power;
+
+            for (int d = 2; d < digits; d++)
+                table[i][d] = table[i][d - 1].multiply(power).mod(modulus);
+
+            // Move to the next window, power = power^(2^WINDOW)
+            power = table[i][digits - 1].multiply(power).mod(modulus);
+        }
+    }
+
+    /**
+     * Raise the base to the given exponent.
+     * @param exponent the exponent, which is not negative
+     * @return base^exponent (mod m)
+     */
+    public BigInteger pow(BigInteger exponent) {
+
+        // The exponent does not fit in the table
+        if (exponent.signum() < 0 || exponent.bitLength() > maxBits)
+            return base.modPow(exponent, modulus);
+
+        if (longTable != null)
+            return BigInteger.valueOf(longPow(exponent));
+
+        // 1 (mod m), which is 0 if m is 1
+        BigInteger result = BigInteger.ONE.mod(modulus);
+
+        int bits = exponent.bitLength();
+
+        for (int i = 0; i * WINDOW < bits; i++) {
+
+            // Get the digit of the current window
+            int d = 0;
+            for (int j = WINDOW - 1; j >= 0; j--) {
+                d <<= 1;
+                if (exponent.testBit(i * WINDOW + j))
+                    d |= 1;
+            }
+
+            if (d != 0)
+                result = result.multiply(table[i][d]).mod(modulus);
+        }
+
+        return result;
+    }
+
+    /**
+     * Raise the base to the given exponent with the table on longs.
+     * @param exponent the exponent, which fits in the table
+     * @return base^exponent (mod m)
+     */
+    private long longPow(BigInteger exponent) {
+
+        long result = longModulus.reduce(1);
+
+        int bits = exponent.bitLength();
+
+        // The whole exponent fits in a long, take the windows by shifting
+        if (bits < Long.SIZE) {
+
+            long e = exponent.longValue();
+
+            for (int i = 0; e != 0; i++, e >>>= WINDOW) {
+
+                int d = (int) (e & ((1 << WINDOW) - 1));
+
+                if (d != 0)
+                    result = longModulus.multiply(result, longTable[i][d]);
+            }
+
+            return result;
+        }
+
+        for (int i = 0; i * WINDOW < bits; i++) {
+
+            int d = 0;
+            for (int j = WINDOW - 1; j >= 0; j--) {
+                d <<= 1;
+                if (exponent.testBit(i * WINDOW + j))
+                    d |= 1;
+            }
+
+            if (d != 0)
+                result = longModulus.multiply(result, longTable[i][d]);
+        }
+
+        return result;
+    }
+
+    /**
+     * Get the base of this table.
+     * @return the fixed base
+     */
+    public BigInteger getBase() {
+        return base;
+    }
+
+    /**
+     * Get the modulo of this table.
+     * @return the modulo
+     */
+    public BigInteger getModulus() {
+        return modulus;
+    }
+}
@@ -1,4 +1,6 @@
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 /**
@@ -6,16 +8,14 @@ import java.util.Random;
  * message and decrypting a cipher text. This Knapsack is designed to
  * have a weight count of 5 in both the superincreasing set and public key.
  * 
+ * This algorithm will encrypt one character at once, and ONLY encrypt 
+ * alphabetic letters. The weight of the private key S and public key W has to
+ * be equal. The cipher text is in the format of "1234 5678 1122 3344".
+ * 
  * @author Su Khai Koh
  */
 
-public class Knapsack implements Algorithm {
-
-    private BigInteger[] W;     // W = S x a (mod m)
-    private BigInteger[] S;     // Super-increasing set, WEIGHT_COUNT 5
-    private BigInteger   m;     // modulo, which is > sum of everything in S
-    private BigInteger   a;     // secret key (prime)
-    private BigInteger   z;     // a^-1 (mod m)
+public class Knapsack extends BlockAlgorithm<KnapsackKey> {
 
     private int weightCount;
 
@@ -26,24 +26,51 @@ public class Knapsack implements Algorithm {
      * keys, and generate all public and private keys.
      */
     public Knapsack() {
+        this("10000");
+    }
+    
+    /**
+     * Create a Knapsack algorithm with the default weight count and generate
+     * all public and private keys for the given maximum value.
+     * @param maxValue the maximum value for certain keys
+     */
+    public Knapsack(String maxValue) {
+        
+        super(1, 1);
         
         weightCount = 5;    // default to 5
-        maxValue = new BigInteger("10000");
+        this.maxValue = new BigInteger(maxValue);
         
         generateAllKeys();
         
     }
     
+    /**
+     * Create a Knapsack algorithm with the given keys.
+     * @param key the keys
+     */
+    public Knapsack(KnapsackKey key) {
+        
+        super(1, 1);
+        
+        weightCount = key.getWeightCount();
+        maxValue = new BigInteger("10000");
+        
+        setKey(key);
+    }
+    
     /**
      * Generate all public and private keys.
      */
     public void generateAllKeys() {
         
-        generateS();
-        generateM();
-        generateA();
-        generateW();
-        generateZ();
+        Random random = getRandomSource().getRandom(RandomSource.KEY);
+        
+        BigInteger[] S = generateS(weightCount, maxValue, random);
+        BigInteger m = generateM(S, random);
+        BigInteger a = generateA(m, maxValue);
+        
+        setKey(new KnapsackKey(m, a, S, generateW(S, m, a)));
     }
     
     /**
@@ -52,10 +79,52 @@ public class Knapsack implements Algorithm {
      * preceding terms.
      */
     public void generateS() {
-        
-        S = new BigInteger[weightCount];
+        KnapsackKey key = getKey();
+        setKey(new KnapsackKey(key.getM(), key.getA(), 
+                               generateS(weightCount, maxValue, random()), 
+                               key.getW()));
+    }
+
+    /**
+     * Generate the private key m, where m is a modulo and also greater than the 
+     * sum of all numbers in S.
+     */
+    public void generateM() {
+        KnapsackKey key = getKey();
+        setKey(new KnapsackKey(generateM(key.getS(), random()), key.getA(), key.getS(), 
+                               key.getW()));
+    }
+
+    /**
+     * Generate the private key a, where a has no factor in common with the
+     * modulus.
+     */
+    public void generateA() {
+        KnapsackKey key = getKey();
+        setKey(new KnapsackKey(key.getM(), generateA(key.getM(), maxValue), key.getS(), 
+                               key.getW()));
+    }
 
-        Random random = new Random();
+    /**
+     * Generate the public key W, where each term in W is equal to the term in
+     * S multiply by the private key a and mod m.
+     */
+    public void generateW() {
+        KnapsackKey key = getKey();
+        setKey(new KnapsackKey(key.getM(), key.getA(), key.getS(), 
+                               generateW(key.getS(), key.getM(), key.getA())));
+    }
+    
+    /**
+     * Generate a super-increasing set.
+     * @param weightCount the number of terms in the set
+     * @param maxValue the maximum value of the keys
+     * @param random the random number generator
+     * @return the super-increasing set
+     */
+    private static BigInteger[] generateS(int weightCount, BigInteger maxValue, Random random) {
+        
+        BigInteger[] S = new BigInteger[weightCount];
               
         int bitLength = maxValue.bitLength();
         
@@ -77,13 +146,17 @@ public class Knapsack implements Algorithm {
             total = total.add(value);
             total = total.add(total);
         }
+        
+        return S;
     }
-
+    
     /**
-     * Generate the private key m, where m is a modulo and also greater than the 
-     * sum of all numbers in S.
+     * Generate a modulo that is greater than the sum of all numbers in S.
+     * @param S the super-increasing set
+     * @param random the random number generator
+     * @return the modulo m
      */
-    public void generateM() {
+    private static BigInteger generateM(BigInteger[] S, Random random) {
 
         BigInteger total = BigInteger.ZERO;
 
@@ -91,30 +164,47 @@ public class Knapsack implements Algorithm {
             total = total.add(S[i]);
         
         // Generate a random number and add it into m
-        BigInteger addition = new BigInteger(weightCount + 1, new Random());
+        BigInteger addition = new BigInteger(S.length + 1, random);
         
         // m > sum of everything in S
-        m = total.add(addition);
+        return total.add(addition);
     }
-
+    
     /**
-     * Generate the private key a, where a has no factor in common with the
-     * modulus.
+     * Get the random number generator of the current thread for the keys.
+     * @return the random number generator
      */
-    public void generateA() {
-                
+    private Random random() {
+        return getRandomSource().getRandom(RandomSource.KEY);
+    }
+    
+    /**
+     * Generate a prime number a that is not a multiple of the modulo.
+     * @param m the modulo
+     * @param maxValue the maximum value of the keys
+     * @return the private key a
+     */
+    private static BigInteger generateA(BigInteger m, BigInteger maxValue) {
+        
+        BigInteger a;
+        
         do {
-            a = Prime.getPrime(1, maxValue.longValue());
-        } while (a.mod(m).equals(BigInteger.ZERO));        
+            a = PrimePool.getPrime(1, maxValue.longValue());
+        } while (a.mod(m).equals(BigInteger.ZERO));
+        
+        return a;
     }
-
+    
     /**
-     * Generate the public key W, where each term in W is equal to the term in
-     * S multiply by the private key a and mod m.
+     * Generate the public key W, where W[i] = S[i] x a (mod m).
+     * @param S the super-increasing set
+     * @param m the modulo
+     * @param a the private key a
+     * @return the public key W
      */
-    public void generateW() {
+    private static BigInteger[] generateW(BigInteger[] S, BigInteger m, BigInteger a) {
 
-        W = new BigInteger[S.length];
+        BigInteger[] W = new BigInteger[S.length];
 
         BigInteger number;
 
@@ -125,111 +215,59 @@ public class Knapsack implements Algorithm {
             // W[i] = S[i] x a (mod m)
             W[i] = number;
         }
+        
+        return W;
+    }
+
+    /**
+     * Check the weight of the private key S and public key W are equal.
+     * @param key the keys
+     * @throws IllegalArgumentException if the weights are different
+     */
+    protected void checkKeys(KnapsackKey key) {
+        if (!key.hasEqualWeights())
+            throw new IllegalArgumentException(
+                    "Weight of S key and weight of W key is different.");
     }
     
-    /** 
-     * Generate z, where z = a^-1 (mod m)
+    /**
+     * Each block only depends on the public keys, so the blocks of a large
+     * message can be encrypted in parallel.
+     * @return true
      */
-    public void generateZ() {
-        z = a.modInverse(m);
+    protected boolean isParallelEncrypt() {
+        return true;
     }
-
+    
     /** 
-     * Encrypt the given message by using Knapsack algorithm. This algorithm 
-     * will encrypt one character at once, and ONLY encrypt alphabetic letters.
-     * The weight of the private key S and public key W has to be equal.
-     * @param message the message to be encrypted
-     * @return the cipher text, in the format of "1234 5678 1122 3344"
+     * Encrypt one character of the message, where the cipher text is the sum
+     * of the terms in W that are picked by the bits of the character.
+     * @param key the keys
+     * @param value the value of the character
+     * @param block the cipher text block to be filled in
      */
-    public String encrypt(String message) {
-        
-        if (S.length != W.length)
-            return "Weight of S key and weight of W key is different.";
-        
-        // Remove all non-alphanumeric letters
-        message = message.replaceAll("[^a-zA-Z0-9]", "");
-
-        message = message.toUpperCase();
-        
-        StringBuilder result = new StringBuilder();
-        
-        for (int i = 0; i < message.length(); i++) {
-            
-            // If character is not a letter, return 
-            if (!Character.isLetter(message.charAt(i)))
-                return "Invalid message input.\n"+
-                       "Message must contains only alphabetic letters.";
-            
-            String c = Character.toString(message.charAt(i));
-            
-            BigInteger total = BigInteger.ZERO;
-            
-            // Get the value of the character
-            int value = Convert.getValue(c.charAt(0));
-            
-            // Check for every bit in the value to the public key W
-            for (int j = W.length - 1, bitPosition = 1; j >= 0; j--) {
-                
-                if ((value & bitPosition) != 0)
-                    total = total.add(W[j]);
-                
-                bitPosition <<= 1;  // Check next bit
-            }
-            
-            result.append(total + "\n");
-        }
-        
-        return result.toString();
+    protected void encryptBlock(KnapsackKey key, int value, BigInteger[] block) {
+        block[0] = key.getCipherText(value);
     }
-
+    
     /**
-     * Decrypt the given cipher text by using Knapsack algorithm. The cipher
-     * text should only contain numeric characters.
-     * @param cipherText the text to be decoded
-     * @return the original message in the form of one character per block
+     * Calculate z and build the decrypt table of the keys before decrypting
+     * a cipher text, if they have not been built yet.
+     * @param key the keys
      */
-    public String decrypt(String cipherText) {
-        
-        if (S.length != W.length)
-            return "Weight of S key and weight of W key is different.";
-        
-        // Recalculate the inverse of a
-        generateZ();
-        
-        cipherText = cipherText.trim().replaceAll("[^a-zA-Z0-9,\\s]", "");
-        cipherText = cipherText.replaceAll(",", " ");
-        
-        String[] texts = cipherText.split("\\s+");
-        
-        StringBuilder result = new StringBuilder();
-        
-        for (String t : texts) {
-            
-            if (!t.matches("[0-9]+"))
-                return "Invalid cipher text input.\n"+
-                       "Cipher text must contains only numeric letters.";
-            
-            // Total = t x a^-1 (mod m)
-            BigInteger total = new BigInteger(t).multiply(z);
-            total = total.mod(m);
-                        
-            StringBuilder binary = new StringBuilder();
-            
-            // Build the binary form
-            for (int i = S.length-1; i >= 0; i--) {
-                if (total.compareTo(S[i]) >= 0) {
-                    binary.insert(0, "1");
-                    total = total.subtract(S[i]);
-                } else {
-                    binary.insert(0, "0");
-                }
-            }
-            
-            char c = Convert.binaryToCharacter(binary.toString());
-            result.append(c + "\n");
-        }
-        
-        return result.toString();
+    protected void prepareDecrypt(KnapsackKey key) {
+        key.getDecryption();
+    }
+    
+    /**
+     * Decrypt one block of the cipher text.
+     * @param key the keys
+     * @param block the cipher text block
+     * @param letters the buffer to be filled in with the character of the
+     *        block
+     */
+    protected void decryptBlock(KnapsackKey key, BigInteger[] block, char[] letters) {
+        letters[0] = key.getDecryption().decrypt(block[0]);
     }
 
     /**
@@ -255,21 +293,16 @@ public class Knapsack implements Algorithm {
      * @param S the private key S, where S is a super-increasing set
      */
     public void setPrivateKeys(String m, String a, String S) {
-        this.m = new BigInteger(m);
-        this.a = new BigInteger(a);
-        
-        // Remove all non-alphanumeric letters
-        S = S.replaceAll("[^a-zA-Z0-9,\\s]", "");
-        S = S.replaceAll(",", " ");
         
-        String[] terms = S.split("\\s+");
+        KnapsackKey key = getKey();
+        KnapsackKey newKey = new KnapsackKey(new BigInteger(m), new BigInteger(a),
+                                             parseWeights(S), key.getW());
         
-        weightCount = terms.length;
+        weightCount = newKey.getWeightCount();
         
-        this.S = new BigInteger[weightCount];
-        
-        for (int i = 0; i < terms.length; i++) 
-            this.S[i] = new BigInteger(terms[i]);
+        // Keep z and the decrypt table if the keys did not change
+        if (!newKey.equals(key))
+            setKey(newKey);
     }
     
     /**
@@ -278,44 +311,57 @@ public class Knapsack implements Algorithm {
      */
     public void setPublicKeys(String W) {
         
-        // Remove all non-alphanumeric letters
-        W = W.replaceAll("[^a-zA-Z0-9,\\s]", "");
-        W = W.replaceAll(",", " ");
+        KnapsackKey key = getKey();
+        KnapsackKey newKey = new KnapsackKey(key.getM(), key.getA(), key.getS(),
+                                             parseWeights(W));
         
-        String[] terms = W.split("\\s+");
+        // Keep the decrypt table if the key did not change
+        if (!newKey.equals(key))
+            setKey(newKey);
+    }
+    
+    /**
+     * Parse the terms of a key, i.e "(1, 2, 4, 8)". Any character other than
+     * letters, numbers, commas and white spaces are ignored.
+     * @param key the key in text form
+     * @return the terms of the key
+     * @throws NumberFormatException if a term is not a number, with the
+     *         position of the term
+     */
+    static BigInteger[] parseWeights(String key) {
+        
+        List<BigInteger> terms = new ArrayList<BigInteger>();
+        
+        CipherTokenizer tokens = new CipherTokenizer();
+        
+        for (int i = 0; i < key.length(); i++)
+            if (tokens.add(key.charAt(i)))
+                terms.add(tokens.getNumber());
         
-        this.W = new BigInteger[terms.length];
+        if (tokens.finish())
+            terms.add(tokens.getNumber());
         
-        for (int i = 0; i < terms.length; i++) 
-            this.W[i] = new BigInteger(terms[i]);
+        return terms.toArray(new BigInteger[terms.size()]);
     }
     
     /** 
      * Get the private key m, where m is a modulo.
      * @return the modulo, m
      */
-    public String getM() { return m.toString(); }
+    public String getM() { return getKey().getM().toString(); }
     
     /** 
      * Get the private key, a.
      * @return the private key, a 
      * */
-    public String getA() { return a.toString(); }
+    public String getA() { return getKey().getA().toString(); }
 
     /** 
      * Get the private key S, where S is a super-increasing set.
      * @return the private key S in the format as 123, 234, 345, 456, 567
      */
     public String getS() {
-
-        StringBuilder str = new StringBuilder("");
-
-        for (int i = 0; i < S.length; i++) {
-            str.append(S[i]);
-            str.append(i < S.length-1 ? ", " : "");
-        }
-
-        return str.toString();
+        return format(getKey().getS());
     }
     
     /** 
@@ -323,12 +369,21 @@ public class Knapsack implements Algorithm {
      * @return the public key W in the format as 234, 345, 456, 567, 678
      */
     public String getW() {
+        return format(getKey().getW());
+    }
+    
+    /**
+     * Format the terms of a key, i.e 123, 234, 345
+     * @param terms the terms of the key
+     * @return the terms separated by commas
+     */
+    private static String format(BigInteger[] terms) {
 
         StringBuilder str = new StringBuilder("");
 
-        for (int i = 0; i < W.length; i++) {
-            str.append(W[i]);
-            str.append(i < W.length-1 ? ", " : "");
+        for (int i = 0; i < terms.length; i++) {
+            str.append(terms[i]);
+            str.append(i < terms.length-1 ? ", " : "");
         }
 
         return str.toString();
@@ -0,0 +1,306 @@
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable set of Knapsack keys, the private keys m, a and the
+ * super-increasing set S, and the public key W. A key can be shared by any
+ * number of threads.
+ *
+ * The cipher text of every letter is calculated with the key. The values
+ * for decryption, z = a^-1 (mod m) and the letter of every subset sum of W,
+ * are calculated on the first decryption and kept with the key.
+ *
+ * @author Su Khai Koh
+ */
+public final class KnapsackKey {
+
+    private final BigInteger   m;   // modulo, which is > sum of everything in S
+    private final BigInteger   a;   // secret key (prime)
+    private final BigInteger[] S;   // Super-increasing set
+    private final BigInteger[] W;   // W = S x a (mod m)
+
+    // Cipher text of every alphabetic letter
+    private final BigInteger[] cipherTable;
+
+    // Values for decryption, calculated on the first decryption
+    private volatile Decryption decryption;
+
+    // Largest weight count that the decrypt table is built for
+    private static final int MAX_TABLE_WEIGHT_COUNT = 16;
+
+    /**
+     * Create a set of keys.
+     * @param m the private key m, where m is a modulo
+     * @param a the private key a, where a has no common factor to m
+     * @param S the private key S, where S is a super-increasing set
+     * @param W the public key W, where W[index] = S[index] x a (mod m)
+     */
+    public KnapsackKey(BigInteger m, BigInteger a, BigInteger[] S, BigInteger[] W) {
+        this.m = m;
+        this.a = a;
+        this.S = S.clone();
+        this.W = W.clone();
+
+        cipherTable = generateCipherTable();
+    }
+
+    /**
+     * Get the private key m, where m is a modulo.
+     * @return the modulo, m
+     */
+    public BigInteger getM() {
+        return m;
+    }
+
+    /**
+     * Get the private key, a.
+     * @return the private key, a
+     */
+    public BigInteger getA() {
+        return a;
+    }
+
+    /**
+     * Get the private key S, where S is a super-increasing set.
+     * @return a copy of S
+     */
+    public BigInteger[] getS() {
+        return S.clone();
+    }
+
+    /**
+     * Get the public key W.
+     * @return a copy of W
+     */
+    public BigInteger[] getW() {
+        return W.clone();
+    }
+
+    /**
+     * Get the number of terms in S.
+     * @return the weight count of S
+     */
+    public int getWeightCount() {
+        return S.length;
+    }
+
+    /**
+     * Check whether the weight of S and the weight of W are equal.
+     * @return true if S and W have the same number of terms
+     */
+    public boolean hasEqualWeights() {
+        return S.length == W.length;
+    }
+
+    /**
+     * Get the cipher text of a letter.
+     * @param value the value of the letter
+     * @return the cipher text of the letter
+     */
+    BigInteger getCipherText(int value) {
+        return cipherTable[value];
+    }
+
+    /**
+     * Get the values for decryption, calculating them on the first call. Two
+     * threads may both calculate them, but they get the same values.
+     * @return the values for decryption
+     * @throws ArithmeticException if a has no inverse modulo m
+     */
+    Decryption getDecryption() {
+
+        Decryption values = decryption;
+
+        if (values == null)
+            decryption = values = new Decryption();
+
+        return values;
+    }
+
+    /**
+     * Check whether the other object is a set of keys with the same values.
+     * @param o the other object
+     * @return true if all the keys are equal
+     */
+    public boolean equals(Object o) {
+
+        if (!(o instanceof KnapsackKey))
+            return false;
+
+        KnapsackKey other = (KnapsackKey) o;
+
+        return m.equals(other.m) && a.equals(other.a) &&
+               Arrays.equals(S, other.S) && Arrays.equals(W, other.W);
+    }
+
+    public int hashCode() {
+        return (m.hashCode() * 31 + a.hashCode()) * 31 + Arrays.hashCode(W);
+    }
+
+    /**
+     * Build the table of cipher text for every alphabetic letter with the
+     * public key W.
+     * @return the cipher text of every letter
+     */
+    private BigInteger[] generateCipherTable() {
+
+        BigInteger[] table = new BigInteger[Convert.ALPHABETIC_CHARACTERS];
+
+        for (int value = 0; value < table.length; value++)
+            table[value] = subsetSum(value);
+
+        return table;
+    }
+
+    /**
+     * Sum up the terms in W that are picked by the bits of a value, where
+     * the last term is the lowest bit.
+     * @param value the value
+     * @return the subset sum of W
+     */
+    private BigInteger subsetSum(int value) {
+
+        BigInteger total = BigInteger.ZERO;
+
+        // Check for every bit in the value to the public key W
+        for (int j = W.length - 1, bitPosition = 1; j >= 0; j--) {
+
+            if ((value & bitPosition) != 0)
+                total = total.add(W[j]);
+
+            bitPosition <<= 1;  // Check next bit
+        }
+
+        return total;
+    }
+
+    /**
+     * The values for decryption, z = a^-1 (mod m), the keys on longs, and
+     * the table that maps every possible cipher text of W to its letter.
+     */
+    final class Decryption {
+
+        private final BigInteger z;     // a^-1 (mod m)
+
+        // Modulo m, z and S on longs, null if they are too big for a long
+        private final LongModulus mModulus;
+        private final long zLong;
+        private final long[] longS;
+
+        // Letter of every subset sum of W, null if W is too long
+        private final Map<BigInteger, Character> decryptTable;
+
+        Decryption() {
+
+            z = a.modInverse(m);
+
+            long[] terms = LongModulus.of(m) != null ? new long[S.length] : null;
+
+            for (int i = 0; terms != null && i < S.length; i++) {
+
+                if (S[i].bitLength() >= Long.SIZE)
+                    terms = null;
+                else
+                    terms[i] = S[i].longValue();
+            }
+
+            mModulus = terms != null ? LongModulus.of(m) : null;
+            zLong = terms != null ? mModulus.reduce(z) : 0;
+            longS = terms;
+
+            decryptTable = W.length <= MAX_TABLE_WEIGHT_COUNT ? generateDecryptTable() : null;
+        }
+
+        /**
+         * Decrypt one block of the cipher text, with the decrypt table if
+         * the block is in it.
+         * @param block the cipher text of one letter
+         * @return the letter of the given block
+         */
+        char decrypt(BigInteger block) {
+
+            Character c = decryptTable != null ? decryptTable.get(block) : null;
+
+            // Not a subset sum of W, decrypt it with the private keys
+            return c != null ? c : decryptValue(block);
+        }
+
+        /**
+         * Build the table that maps every possible cipher text of the public
+         * key W to its letter. Each letter is decrypted with the private
+         * keys, so the table gives the same letters as decryptValue().
+         * @return the letter of every subset sum of W
+         */
+        private Map<BigInteger, Character> generateDecryptTable() {
+
+            Map<BigInteger, Character> table = new HashMap<BigInteger, Character>();
+
+            for (int value = 0; value < (1 << W.length); value++) {
+                BigInteger total = subsetSum(value);
+                table.put(total, decryptValue(total));
+            }
+
+            return table;
+        }
+
+        /**
+         * Decrypt one block of cipher text with the private keys.
+         * @param block the cipher text of one letter
+         * @return the letter of the given block
+         */
+        private char decryptValue(BigInteger block) {
+
+            // Small keys, calculate on longs
+            if (longS != null)
+                return decryptValue(mModulus.multiply(mModulus.reduce(block), zLong));
+
+            // Total = t x a^-1 (mod m)
+            BigInteger total = block.multiply(z);
+            total = total.mod(m);
+
+            int value = 0;
+
+            // Build the binary form, where the last term is the lowest bit
+            for (int i = S.length-1, bit = 0; i >= 0; i--, bit++) {
+                if (total.compareTo(S[i]) >= 0) {
+
+                    // The binary form does not fit in an int
+                    if (bit >= Integer.SIZE - 1)
+                        throw new NumberFormatException("Binary form is too large.");
+
+                    value |= 1 << bit;
+                    total = total.subtract(S[i]);
+                }
+            }
+
+            return Convert.valueToCharacter(value);
+        }
+
+        /**
+         * Decrypt one block of cipher text with the private keys on longs.
+         * @param total the cipher text multiplied by z, t x a^-1 (mod m)
+         * @return the letter of the given block
+         */
+        private char decryptValue(long total) {
+
+            int value = 0;
+
+            // Build the binary form, where the last term is the lowest bit
+            for (int i = longS.length-1, bit = 0; i >= 0; i--, bit++) {
+                if (total >= longS[i]) {
+
+                    // The binary form does not fit in an int
+                    if (bit >= Integer.SIZE - 1)
+                        throw new NumberFormatException("Binary form is too large.");
+
+                    value |= 1 << bit;
+                    total -= longS[i];
+                }
+            }
+
+            return Convert.valueToCharacter(value);
+        }
+    }
+}
@@ -1,44 +1,279 @@
 import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.CancellationException;
 
 /**
- * This class generate a random prime number.
- * 
+ * This class generate a random prime number. The search is done with a
+ * segmented sieve of small primes to remove most of the composite numbers,
+ * and a deterministic Miller-Rabin test for the remaining candidates, so
+ * the resulting prime will never go over the given range.
+ *
  * @author Su Khai Koh
  */
 public class Prime {
-        
+
+    // All the small primes below this limit are used for the sieve
+    private static final int SIEVE_LIMIT = 1 << 16;
+
+    // Any candidate below this value that survived the sieve is a prime
+    private static final long SIEVE_LIMIT_SQUARE = (long) SIEVE_LIMIT * SIEVE_LIMIT;
+
+    // Number of candidates to be sieved at once
+    static final int SEGMENT_SIZE = 1 << 15;
+
+    // Ranges at least this wide are searched on several threads
+    private static final long PARALLEL_THRESHOLD = 1L << 32;
+
+    // Miller-Rabin bases that are enough for every 64-bit number
+    private static final long[] WITNESSES =
+        {2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37};
+
+    private static final int[] SMALL_PRIMES = generateSmallPrimes();
+
+    public static final String NO_PRIME = "No prime number within the given range";
+
     /**
      * Generate a random prime number.
      * @return a random prime number
      */
     public static BigInteger getPrime() {
-        
-        long n = new Random().nextLong();
-        
-        return getPrime(1, n < 0 ? n *= -1 : n);
+
+        long n = RandomSource.getDefault().getRandom(RandomSource.PRIME).nextLong();
+
+        return getPrime(1, n & Long.MAX_VALUE);
     }
-    
+
     /**
      * Generate a random prime number within a given range.
      * @param low the lowest range of the possible prime number
      * @param high the highest range of the possible prime number
      * @return a random prime number within a the given low and high numbers
+     * @throws IllegalArgumentException if there is no prime number within
+     *         the given range
+     * @throws CancellationException if the current thread was interrupted
+     *         or the search was cancelled
      */
     public static BigInteger getPrime(long low, long high) {
-        
-        Random random = new Random();
 
-        BigInteger p;   // prime number
-        
-        do {
-            
-            long n = ((long)(random.nextDouble() * (high - low))) + low ;
+        low = Math.max(low, 2);
 
-            p = new BigInteger(Long.toString(n)).nextProbablePrime();
+        if (low > high)
+            throw new IllegalArgumentException(NO_PRIME);
 
-        } while (p.compareTo(new BigInteger(Long.toString(high))) > 0);
+        BigInteger p;
+
+        // Large range, search on several threads
+        if (high - low >= PARALLEL_THRESHOLD && PrimeSearch.MAX_THREADS > 1) {
+            PrimeSearch search = PrimeSearch.start(low, high);
+
+            try {
+                p = search.get();
+            } catch (InterruptedException e) {
+
+                // Stop the threads of the search, they would keep the pool busy
+                search.cancel(true);
+
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Prime number search was interrupted.");
+            }
+        } else {
+            p = findPrime(low, high);
+        }
+
+        if (p == null)
+            throw new IllegalArgumentException(NO_PRIME);
 
         return p;
     }
+
+    /**
+     * Generate a random prime number within a given range on the current
+     * thread only.
+     * @param low the lowest range of the possible prime number
+     * @param high the highest range of the possible prime number
+     * @return a random prime number within a the given low and high numbers,
+     *         or null if there is no prime number within the given range
+     */
+    static BigInteger findPrime(long low, long high) {
+
+        low = Math.max(low, 2);
+
+        if (low > high)
+            return null;
+
+        // Start from a random point and search upward, then wrap around to
+        // the low end if there is no prime number above the starting point
+        long start = randomStart(low, high);
+
+        long p = nextPrime(start, high);
+
+        if (p < 0)
+            p = nextPrime(low, start - 1);
+
+        return p < 0 ? null : BigInteger.valueOf(p);
+    }
+
+    /**
+     * Get a random point within the given range to start the search from.
+     * @param low the lowest range of the search
+     * @param high the highest range of the search
+     * @return a random number n, where low <= n <= high
+     */
+    static long randomStart(long low, long high) {
+
+        Random random = RandomSource.getDefault().getRandom(RandomSource.PRIME);
+
+        long start = low + (long) (random.nextDouble() * (high - low + 1));
+
+        return Math.min(start, high);
+    }
+
+    /**
+     * Find the smallest prime number within the given range. The range is
+     * sieved one segment at a time with the small primes, and the survivors
+     * are tested with Miller-Rabin.
+     * @param from the lowest possible prime number
+     * @param to the highest possible prime number
+     * @return the smallest prime number p, where from <= p <= to, or -1 if
+     *         there is no prime number within the range
+     */
+    static long nextPrime(long from, long to) {
+
+        from = Math.max(from, 2);
+
+        boolean[] composite = new boolean[SEGMENT_SIZE];
+
+        for (long start = from; start <= to; start += SEGMENT_SIZE) {
+
+            // end = min(to, start + SEGMENT_SIZE - 1), without overflow
+            long end = to - start < SEGMENT_SIZE ? to : start + SEGMENT_SIZE - 1;
+            int length = (int) (end - start + 1);
+
+            Arrays.fill(composite, 0, length, false);
+
+            // Cross out the multiples of the small primes in this segment
+            for (int sp : SMALL_PRIMES) {
+
+                long prime = sp;
+
+                if (prime * prime > end)
+                    break;
+
+                // Distance to the first multiple, to avoid overflow near the
+                // end of the long range
+                long offset = (prime - start % prime) % prime;
+
+                if (offset > end - start)
+                    continue;
+
+                long first = Math.max(prime * prime, start + offset);
+
+                for (long j = first; j <= end; j += prime) {
+                    composite[(int) (j - start)] = true;
+
+                    if (end - j < prime)
+                        break;
+                }
+            }
+
+            for (int i = 0; i < length; i++) {
+
+                if (composite[i])
+                    continue;
+
+                long candidate = start + i;
+
+                if (candidate < SIEVE_LIMIT_SQUARE || isPrime(candidate))
+                    return candidate;
+            }
+
+            if (end == to)
+                break;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Check whether the given number is a prime number by using the
+     * deterministic Miller-Rabin test, which is exact for every 64-bit number.
+     * @param n the number to be checked
+     * @return true if the given number is a prime number, otherwise false
+     */
+    public static boolean isPrime(long n) {
+
+        if (n < 2)
+            return false;
+
+        for (long w : WITNESSES) {
+            if (n == w)
+                return true;
+            if (n % w == 0)
+                return false;
+        }
+
+        LongModulus modulus = new LongModulus(n);
+
+        // n - 1 = d * 2^s, where d is odd
+        long d = n - 1;
+        int s = Long.numberOfTrailingZeros(d);
+        d >>= s;
+
+        for (long w : WITNESSES) {
+
+            long x = modulus.pow(w, d);
+
+            if (x == 1 || x == n - 1)
+                continue;
+
+            boolean composite = true;
+
+            for (int r = 1; r < s; r++) {
+
+                x = modulus.multiply(x, x);
+
+                if (x == n - 1) {
+                    composite = false;
+                    break;
+                }
+            }
+
+            if (composite)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Generate all the prime numbers below the sieve limit by using the
+     * Sieve of Eratosthenes.
+     * @return all the prime numbers below the sieve limit
+     */
+    private static int[] generateSmallPrimes() {
+
+        boolean[] composite = new boolean[SIEVE_LIMIT];
+
+        int count = 0;
+
+        for (int i = 2; i < SIEVE_LIMIT; i++) {
+
+            if (composite[i])
+                continue;
+
+            count++;
+
+            for (long j = (long) i * i; j < SIEVE_LIMIT; j += i)
+                composite[(int) j] = true;
+        }
+
+        int[] primes = new int[count];
+
+        for (int i = 2, index = 0; i < SIEVE_LIMIT; i++)
+            if (!composite[i])
+                primes[index++] = i;
+
+        return primes;
+    }
 }
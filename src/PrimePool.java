@@ -0,0 +1,279 @@
+import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of prime numbers that are generated in the background, so that the
+ * keys of the algorithms can be regenerated without waiting for the prime
+ * number search.
+ *
+ * The pool keeps one bounded queue for each range of prime numbers that was
+ * asked for, such as from 1 to the maximum value of the keys. Only the most
+ * recently used ranges are kept, so the pool follows the current maximum
+ * value. A low priority background thread keeps all the queues filled up.
+ * If a queue is empty, the prime number is generated on demand instead.
+ *
+ * @author Su Khai Koh
+ */
+public class PrimePool {
+
+    // Number of prime numbers kept for each range
+    public static final int CAPACITY = 16;
+
+    // Number of ranges kept in the pool
+    public static final int MAX_RANGES = 4;
+
+    private static final Object lock = new Object();
+
+    // All the ranges, ordered from the least recently used
+    private static final Map<Range, BlockingQueue<BigInteger>> queues =
+        new LinkedHashMap<Range, BlockingQueue<BigInteger>>(MAX_RANGES, 0.75f, true) {
+
+            protected boolean removeEldestEntry(
+                    Map.Entry<Range, BlockingQueue<BigInteger>> eldest) {
+                return size() > MAX_RANGES;
+            }
+        };
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong refills = new AtomicLong();
+    private static final AtomicLong refillNanos = new AtomicLong();
+
+    private static Thread worker;
+
+    /**
+     * Get a random prime number within a given range from the pool. If the
+     * pool has no prime number for the range yet, a new prime number is
+     * generated on demand and the range will be filled in the background.
+     * @param low the lowest range of the possible prime number
+     * @param high the highest range of the possible prime number
+     * @return a random prime number within a the given low and high numbers
+     * @throws IllegalArgumentException if there is no prime number within
+     *         the given range
+     * @throws java.util.concurrent.CancellationException if the current
+     *         thread was interrupted while searching
+     */
+    public static BigInteger getPrime(long low, long high) {
+
+        low = Math.max(low, 2);
+
+        if (low > high)
+            throw new IllegalArgumentException(Prime.NO_PRIME);
+
+        BlockingQueue<BigInteger> queue;
+
+        synchronized (lock) {
+
+            Range range = new Range(low, high);
+
+            queue = queues.get(range);
+
+            if (queue == null) {
+                queue = new ArrayBlockingQueue<BigInteger>(CAPACITY);
+                queues.put(range, queue);
+            }
+
+            startWorker();
+
+            // Let the worker refill the queue
+            lock.notifyAll();
+        }
+
+        BigInteger p = queue.poll();
+
+        if (p != null) {
+            hits.incrementAndGet();
+            return p;
+        }
+
+        misses.incrementAndGet();
+
+        return Prime.getPrime(low, high);
+    }
+
+    /**
+     * Remove all the ranges and prime numbers from the pool.
+     */
+    public static void clear() {
+        synchronized (lock) {
+            queues.clear();
+        }
+    }
+
+    /**
+     * Get the number of prime numbers that were taken from the pool.
+     * @return the number of pool hits
+     */
+    public static long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of prime numbers that had to be generated on demand
+     * because the pool was empty.
+     * @return the number of pool misses
+     */
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Get the ratio of prime numbers that were taken from the pool.
+     * @return the hit rate, from 0 to 1
+     */
+    public static double getHitRate() {
+
+        long h = hits.get();
+        long total = h + misses.get();
+
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * Get the number of prime numbers generated by the background thread.
+     * @return the number of refills
+     */
+    public static long getRefills() {
+        return refills.get();
+    }
+
+    /**
+     * Get the number of prime numbers generated by the background thread
+     * per second of its working time.
+     * @return the refill rate, in prime numbers per second
+     */
+    public static double getRefillRate() {
+
+        long nanos = refillNanos.get();
+
+        return nanos == 0 ? 0 : refills.get() * 1e9 / nanos;
+    }
+
+    /**
+     * Get the number of prime numbers waiting in the pool for a given range.
+     * @param low the lowest range of the possible prime number
+     * @param high the highest range of the possible prime number
+     * @return the queue depth of the range, or 0 if the range is not pooled
+     */
+    public static int getQueueDepth(long low, long high) {
+
+        synchronized (lock) {
+
+            Range range = new Range(Math.max(low, 2), high);
+
+            // Look up without changing the order of the ranges
+            for (Map.Entry<Range, BlockingQueue<BigInteger>> entry : queues.entrySet())
+                if (entry.getKey().equals(range))
+                    return entry.getValue().size();
+
+            return 0;
+        }
+    }
+
+    /**
+     * Start the background thread if it is not running. The caller must
+     * hold the lock.
+     */
+    private static void startWorker() {
+
+        if (worker != null)
+            return;
+
+        worker = new Thread(new Runnable() {
+            public void run() {
+                refill();
+            }
+        }, "prime-pool");
+
+        worker.setDaemon(true);
+        worker.setPriority(Thread.MIN_PRIORITY);
+        worker.start();
+    }
+
+    /**
+     * Keep filling up all the queues in the pool. Wait if all of them are
+     * full, until a prime number is taken from the pool.
+     */
+    private static void refill() {
+
+        while (true) {
+
+            Range range = null;
+            BlockingQueue<BigInteger> queue = null;
+
+            synchronized (lock) {
+
+                while (range == null) {
+
+                    // Find the first queue that is not full
+                    for (Map.Entry<Range, BlockingQueue<BigInteger>> entry : queues.entrySet()) {
+
+                        if (!entry.getKey().empty && entry.getValue().remainingCapacity() > 0) {
+                            range = entry.getKey();
+                            queue = entry.getValue();
+                            break;
+                        }
+                    }
+
+                    if (range == null) {
+                        try {
+                            lock.wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+            }
+
+            long startTime = System.nanoTime();
+
+            BigInteger p = Prime.findPrime(range.low, range.high);
+
+            refillNanos.addAndGet(System.nanoTime() - startTime);
+
+            if (p == null) {
+                // Never look for a prime number in this range again
+                range.empty = true;
+                continue;
+            }
+
+            if (queue.offer(p))
+                refills.incrementAndGet();
+        }
+    }
+
+    /**
+     * A range of prime numbers, from low to high.
+     */
+    private static class Range {
+
+        final long low;
+        final long high;
+
+        // True if there is no prime number within the range
+        volatile boolean empty;
+
+        Range(long low, long high) {
+            this.low = low;
+            this.high = high;
+        }
+
+        public boolean equals(Object o) {
+
+            if (!(o instanceof Range))
+                return false;
+
+            Range other = (Range) o;
+
+            return low == other.low && high == other.high;
+        }
+
+        public int hashCode() {
+            return (int) (low ^ (low >>> 32)) * 31 + (int) (high ^ (high >>> 32));
+        }
+    }
+}
@@ -0,0 +1,306 @@
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A prime number search that runs on several threads at once. The range is
+ * walked from a random starting point, and each thread takes the next
+ * segment of candidates that has not been searched yet. The first prime
+ * number found by any thread is the result, and all the other threads will
+ * stop. A search can be cancelled at any time.
+ *
+ * All searches share one pool of threads, so the number of threads never
+ * goes over the number of processors.
+ *
+ * @author Su Khai Koh
+ */
+public class PrimeSearch implements Future<BigInteger> {
+
+    // Maximum number of threads used by all prime searches
+    public static final int MAX_THREADS =
+            Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    private static final ExecutorService POOL =
+            Executors.newFixedThreadPool(MAX_THREADS, new ThreadFactory() {
+
+                private final AtomicInteger count = new AtomicInteger();
+
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "prime-search-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    // Number of threads of the pool that are searching
+    private static final AtomicInteger ACTIVE_WORKERS = new AtomicInteger();
+
+    private final long low;     // lowest possible prime number
+    private final long high;    // highest possible prime number
+    private final long start;   // where the search starts from
+
+    // Number of candidates that have been handed out to the threads
+    private final AtomicLong searched = new AtomicLong();
+
+    private final AtomicReference<BigInteger> prime = new AtomicReference<BigInteger>();
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final AtomicInteger running = new AtomicInteger();
+    private final List<Future<?>> workers = new ArrayList<Future<?>>();
+
+    private volatile boolean cancelled;
+
+    /**
+     * Create a search for the given range. Use start() to create a search.
+     * @param low the lowest possible prime number
+     * @param high the highest possible prime number
+     * @param start where the search starts from, low <= start <= high
+     */
+    private PrimeSearch(long low, long high, long start) {
+        this.low = low;
+        this.high = high;
+        this.start = start;
+    }
+
+    /**
+     * Start searching for a random prime number within the given range by
+     * using all the available threads.
+     * @param low the lowest range of the possible prime number
+     * @param high the highest range of the possible prime number
+     * @return the running search
+     */
+    public static PrimeSearch start(long low, long high) {
+        return start(low, high, MAX_THREADS);
+    }
+
+    /**
+     * Start searching for a random prime number within the given range.
+     * @param low the lowest range of the possible prime number
+     * @param high the highest range of the possible prime number
+     * @param threads the number of threads to be used, which is limited to
+     *        the maximum number of threads
+     * @return the running search
+     */
+    public static PrimeSearch start(long low, long high, int threads) {
+
+        low = Math.max(low, 2);
+
+        final PrimeSearch search = new PrimeSearch(low, high, Prime.randomStart(low, high));
+
+        if (low > high) {
+            search.done.countDown();
+            return search;
+        }
+
+        // No point to have more threads than segments
+        long segments = (high - low) / Prime.SEGMENT_SIZE + 1;
+        threads = (int) Math.min(Math.min(threads, MAX_THREADS), segments);
+        threads = Math.max(threads, 1);
+
+        search.running.set(threads);
+
+        synchronized (search.workers) {
+            for (int i = 0; i < threads; i++) {
+                search.workers.add(POOL.submit(new Runnable() {
+                    public void run() {
+                        search.work();
+                    }
+                }));
+            }
+        }
+
+        return search;
+    }
+
+    /**
+     * Keep searching the next segment until a prime number is found, the
+     * whole range was searched, or the search was cancelled.
+     */
+    private void work() {
+
+        ACTIVE_WORKERS.incrementAndGet();
+
+        try {
+            long[] segment;
+
+            while (!isDone() && (segment = nextSegment()) != null) {
+
+                long p = Prime.nextPrime(segment[0], segment[1]);
+
+                if (p >= 0) {
+                    found(BigInteger.valueOf(p));
+                    break;
+                }
+            }
+        } finally {
+            // The last thread to finish ends the search
+            if (running.decrementAndGet() == 0)
+                done.countDown();
+
+            ACTIVE_WORKERS.decrementAndGet();
+        }
+    }
+
+    /**
+     * Get the number of threads that are searching for any search.
+     * @return the number of busy threads of the pool
+     */
+    static int getActiveWorkers() {
+        return ACTIVE_WORKERS.get();
+    }
+
+    /**
+     * Get the next segment of candidates to be searched. The candidates are
+     * handed out from the starting point to high, then from low to the
+     * starting point.
+     * @return the segment in the format of {from, to}, or null if the whole
+     *         range was handed out
+     */
+    private long[] nextSegment() {
+
+        long total = high - low + 1;
+        long upper = high - start + 1;     // candidates from start to high
+
+        while (true) {
+
+            long offset = searched.get();
+
+            if (offset >= total)
+                return null;
+
+            long from, limit;
+
+            if (offset < upper) {
+                from = start + offset;
+                limit = high;
+            } else {
+                from = low + (offset - upper);
+                limit = start - 1;
+            }
+
+            long to = limit - from < Prime.SEGMENT_SIZE ? limit : from + Prime.SEGMENT_SIZE - 1;
+
+            if (searched.compareAndSet(offset, offset + (to - from + 1)))
+                return new long[] {from, to};
+        }
+    }
+
+    /**
+     * Record the prime number found and stop all the other threads.
+     * @param p the prime number found
+     */
+    private void found(BigInteger p) {
+
+        if (!prime.compareAndSet(null, p))
+            return;
+
+        done.countDown();
+
+        stopWorkers();
+    }
+
+    /**
+     * Stop all the threads of this search.
+     */
+    private void stopWorkers() {
+        synchronized (workers) {
+            for (Future<?> worker : workers)
+                worker.cancel(true);
+        }
+    }
+
+    /**
+     * Cancel this search.
+     * @param mayInterruptIfRunning ignored, the threads will always stop
+     *        after the segment they are searching
+     * @return false if the search had already finished, otherwise true
+     */
+    public boolean cancel(boolean mayInterruptIfRunning) {
+
+        if (isDone())
+            return false;
+
+        cancelled = true;
+
+        stopWorkers();
+
+        done.countDown();
+
+        return true;
+    }
+
+    /**
+     * Check whether this search was cancelled.
+     * @return true if this search was cancelled before it finished
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Check whether this search has finished, was cancelled, or found a
+     * prime number.
+     * @return true if this search has finished
+     */
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    /**
+     * Wait for the search to finish and get the prime number found.
+     * @return the prime number found, or null if there is no prime number
+     *         within the range
+     * @throws InterruptedException if the current thread was interrupted
+     * @throws CancellationException if the search was cancelled
+     */
+    public BigInteger get() throws InterruptedException {
+
+        done.await();
+
+        return result();
+    }
+
+    /**
+     * Wait for the search to finish for at most the given time and get the
+     * prime number found.
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of the timeout
+     * @return the prime number found, or null if there is no prime number
+     *         within the range
+     * @throws InterruptedException if the current thread was interrupted
+     * @throws TimeoutException if the search did not finish in time
+     * @throws CancellationException if the search was cancelled
+     */
+    public BigInteger get(long timeout, TimeUnit unit)
+            throws InterruptedException, TimeoutException {
+
+        if (!done.await(timeout, unit))
+            throw new TimeoutException();
+
+        return result();
+    }
+
+    /**
+     * Get the prime number found after the search has finished.
+     * @return the prime number found, or null if there is no prime number
+     *         within the range
+     * @throws CancellationException if the search was cancelled
+     */
+    private BigInteger result() {
+
+        if (cancelled)
+            throw new CancellationException();
+
+        return prime.get();
+    }
+}
@@ -5,42 +5,70 @@ import java.math.BigInteger;
  * decrypting a cipher text. The RSA algorithm will contain a set of public key, 
  * (n, e), and a set of private key, p, q, and d.
  * 
+ * This algorithm will encrypt two characters at once, and ONLY encrypt 
+ * alphabetic letters. The encryption will append an 'X' to the given message
+ * if the given message has an odd in length. The cipher text is in the format
+ * of "1234 5678 1122 3344".
+ * 
  * @author Su Khai Koh
  */
 
-public class RSA implements Algorithm {
-
-    private BigInteger p;   // prime number
-    private BigInteger q;   // prime number
-    private BigInteger n;   // p*q
-    private BigInteger m;   // (p-1)(q-1)
-    private BigInteger e;   // public key
-    private BigInteger d;   // inverse of e mod (p-1)(q-1)
+public class RSA extends BlockAlgorithm<RSAKey> {
 
     private BigInteger maxValue;
-
+    
     /**
      * Default constructor. Set the maximum value to certain keys and generate
      * all public and private keys.
      */
     public RSA() {
+        this("10000");
+    }
+    
+    /**
+     * Create an RSA algorithm and generate all public and private keys for
+     * the given maximum value.
+     * @param maxValue the maximum value for certain keys
+     */
+    public RSA(String maxValue) {
         
-        maxValue = new BigInteger("10000");
+        super(2, 1);
+        
+        this.maxValue = new BigInteger(maxValue);
         
         generateAllKeys();
     }
     
+    /**
+     * Create an RSA algorithm with the given keys.
+     * @param key the keys
+     */
+    public RSA(RSAKey key) {
+        
+        super(2, 1);
+        
+        maxValue = new BigInteger("10000");
+        
+        setKey(key);
+    }
+    
     /**
      * Generate all private and public keys.
      */
     public void generateAllKeys() {
         
-        generateP();
-        generateQ();
-        generateN();
-        generateM();
-        generateE();
-        generateD();
+        BigInteger p = PrimePool.getPrime(1, maxValue.longValue());
+        BigInteger q = PrimePool.getPrime(1, maxValue.longValue());
+        
+        // n = p*q, m = (p-1)(q-1)
+        BigInteger n = p.multiply(q);
+        BigInteger m = p.subtract(BigInteger.ONE).multiply(q.subtract(BigInteger.ONE));
+        
+        // 0 < e < n, d = e^-1 [mod (p-1)(q-1)]
+        BigInteger e = generateE(n);
+        BigInteger d = e.modInverse(m);
+        
+        setKey(new RSAKey(p, q, d, n, e));
     }
     
     /**
@@ -48,7 +76,9 @@ public class RSA implements Algorithm {
      * to the maximum value.
      */
     public void generateP() {
-        p = Prime.getPrime(1, maxValue.longValue());
+        RSAKey key = getKey();
+        setKey(new RSAKey(PrimePool.getPrime(1, maxValue.longValue()), key.getQ(), 
+                          key.getD(), key.getN(), key.getE()));
     }
     
     /**
@@ -56,36 +86,42 @@ public class RSA implements Algorithm {
      * to the maximum value.
      */
     public void generateQ() {
-        q = Prime.getPrime(1, maxValue.longValue());
+        RSAKey key = getKey();
+        setKey(new RSAKey(key.getP(), PrimePool.getPrime(1, maxValue.longValue()), 
+                          key.getD(), key.getN(), key.getE()));
     }
     
     /**
      * Generate the public key, n, where n = p*q
      */
     public void generateN() {
-        n = p.multiply(q);
+        RSAKey key = getKey();
+        setKey(new RSAKey(key.getP(), key.getQ(), key.getD(), 
+                          key.getP().multiply(key.getQ()), key.getE()));
     }
     
     /**
-     * Generate the modulo, m, where m = (p-1)(q-1)
+     * Generate the public key e, where 1 < e < n
      */
-    public void generateM() {
-        // m = (p-1)(q-1)
-        m = p.subtract(BigInteger.ONE).multiply((q.subtract(BigInteger.ONE)));
+    public void generateE() {
+        // 0 < e < n
+        RSAKey key = getKey();
+        setKey(new RSAKey(key.getP(), key.getQ(), key.getD(), key.getN(), 
+                          generateE(key.getN())));
     }
     
     /**
-     * Generate the public key e, where 1 < e < n
+     * Generate a public key e for the given n, where 0 < e < n. The search
+     * never goes over n-1, so it does not need to be retried. An n that does
+     * not fit in a long is searched below Long.MAX_VALUE.
+     * @param n the public key n
+     * @return the public key e
      */
-    public void generateE() {
-        while (true) {
-            
-            // 0 < e < n
-            e = Prime.getPrime(1, n.longValue());
-            
-            if (e.compareTo(n) < 0)
-                break;
-        }
+    private static BigInteger generateE(BigInteger n) {
+        
+        long high = n.subtract(BigInteger.ONE).min(BigInteger.valueOf(Long.MAX_VALUE)).longValue();
+        
+        return Prime.getPrime(1, high);
     }
     
     /**
@@ -93,75 +129,152 @@ public class RSA implements Algorithm {
      */
     public void generateD() {
         // d = e^-1 [mod (p-1)(q-1)]
-        d = e.modInverse(m);
+        RSAKey key = getKey();
+        setKey(new RSAKey(key.getP(), key.getQ(), key.getE().modInverse(modulo(key)), 
+                          key.getN(), key.getE()));
+    }
+    
+    /**
+     * Calculate the Chinese Remainder Theorem values, dP, dQ and qInv, of
+     * the current keys now, instead of on the first decryption. If p and q
+     * are not two distinct primes of n, decryption uses d and n only.
+     */
+    public void generateCRT() {
+        getKey().getDecryption();
+    }
+    
+    /**
+     * Get the modulo of the keys, m = (p-1)(q-1)
+     * @param key the keys
+     * @return the modulo m
+     */
+    private static BigInteger modulo(RSAKey key) {
+        return key.getP().subtract(BigInteger.ONE).multiply(key.getQ().subtract(BigInteger.ONE));
+    }
+    
+    /**
+     * Each block only depends on the public keys, so the blocks of a large
+     * message can be encrypted in parallel.
+     * @return true
+     */
+    protected boolean isParallelEncrypt() {
+        return true;
     }
     
     /** 
-     * Encrypt the given message by using RSA algorithm. This algorithm will 
-     * encrypt two characters at once, and ONLY encrypt alphabetic letters.
-     * This encryption will append an 'X' to the given message if the given 
-     * message has an odd in length.
-     * @param message the message to be encrypted
-     * @return the cipher text, in the format of "1234 5678 1122 3344"
-     */
-    public String encrypt(String message) {
-        
-        // Remove all non-alphanumeric letters
-        message = message.replaceAll("[^a-zA-Z0-9]", "");
-        
-        boolean isOdd = (message.length() & 1) == 1 ? true : false;
-        
-        // Append an 'X' if the message has an odd length
-        if (isOdd)
-            message = message + 'X';
-        
-        StringBuilder result = new StringBuilder();
-        
-        int i = 0;
-        while (i < message.length()) {
-            
-            // Get two characters at once
-            String str = message.substring(i, i+=2);
-                        
-            String number = Convert.stringToNumber(str);
-            
-            if (!number.matches("[0-9]+")) 
-                return "Invalid message input.\n"+
-                       "Message must contains only alphabetic letters.";
-            
-            result.append(new BigInteger(number).modPow(e, n) + "\n");
+     * Encrypt one block of the message, where c = m^e (mod n).
+     * @param key the keys
+     * @param value the number form of the two characters of the block
+     * @param block the cipher text block to be filled in
+     */
+    protected void encryptBlock(RSAKey key, int value, BigInteger[] block) {
+        
+        LongModulus nModulus = key.getNModulus();
+        BigInteger e = key.getE();
+        
+        // Small keys, calculate on longs
+        if (nModulus != null && e.signum() >= 0) {
+            block[0] = BigInteger.valueOf(nModulus.pow(nModulus.reduce(value), e));
+            return;
         }
-
-        return result.toString();
+        
+        block[0] = BigInteger.valueOf(value).modPow(e, key.getN());
     }
     
     /**
-     * Decrypt the given cipher text by using RSA algorithm. The cipher text
-     * should only contain numeric characters.
-     * @param cipherText the text to be decoded
-     * @return the original message in the form of two characters per block
+     * Calculate the CRT values of the keys before decrypting a cipher text,
+     * if they have not been calculated yet.
+     * @param key the keys
      */
-    public String decrypt(String cipherText) {
-
-        cipherText = cipherText.trim().replaceAll("[^a-zA-Z0-9,\\s]", "");
-        cipherText = cipherText.replaceAll(",", " ");
-        
-        String[] texts = cipherText.split("\\s+");
-        
-        StringBuilder output = new StringBuilder();
-        
-        for (String t : texts) {
-                        
-            if (!t.matches("[0-9]+"))
-                return "Invalid cipher text input.\n"+
-                       "Cipher text must contains only numeric letters.";
-            
-            BigInteger result = new BigInteger(t).modPow(d, n);
-            
-            output.append(Convert.numberToString(result.toString()) + "\n");
-        }
+    protected void prepareDecrypt(RSAKey key) {
+        key.getDecryption();
+    }
+    
+    /**
+     * Decrypt one block of the cipher text, where m = c^d (mod n).
+     * @param key the keys
+     * @param block the cipher text block
+     * @param letters the buffer to be filled in with the two characters of
+     *        the block
+     */
+    protected void decryptBlock(RSAKey key, BigInteger[] block, char[] letters) {
+        Convert.numberToChars(decryptNumber(key, block[0]), letters, 0);
+    }
+    
+    /**
+     * Decrypt a number of the cipher text, where m = c^d (mod n), with the
+     * CRT values of the keys if p and q are two distinct primes of n.
+     * @param key the keys
+     * @param c the number to be decrypted
+     * @return the decrypted number, c^d (mod n)
+     */
+    static BigInteger decryptNumber(RSAKey key, BigInteger c) {
+        
+        RSAKey.Decryption crt = key.getDecryption();
+        LongModulus nModulus = key.getNModulus();
+        BigInteger d = key.getD();
         
-        return output.toString();
+        // Small keys, calculate on longs
+        if (crt.useCRT && crt.pModulus != null && crt.qModulus != null)
+            return decryptCRT(c, crt, nModulus != null);
+        else if (crt.useCRT)
+            return decryptCRT(key, c, crt);
+        else if (nModulus != null && d.signum() >= 0)
+            return BigInteger.valueOf(nModulus.pow(nModulus.reduce(c), d));
+        else
+            return c.modPow(d, key.getN());
+    }
+    
+    /**
+     * Decrypt a single block with the Chinese Remainder Theorem and Garner's
+     * recombination, where
+     *     m1 = c^dP (mod p)
+     *     m2 = c^dQ (mod q)
+     *     h  = qInv * (m1 - m2) (mod p)
+     *     m  = m2 + h*q
+     * @param key the keys
+     * @param c the cipher block to be decrypted
+     * @param crt the CRT values of the keys
+     * @return the decrypted block, which is equal to c^d (mod n)
+     */
+    private static BigInteger decryptCRT(RSAKey key, BigInteger c, RSAKey.Decryption crt) {
+        
+        BigInteger p = key.getP();
+        BigInteger q = key.getQ();
+        
+        BigInteger m1 = c.modPow(crt.dP, p);
+        BigInteger m2 = c.modPow(crt.dQ, q);
+        
+        BigInteger h = crt.qInv.multiply(m1.subtract(m2)).mod(p);
+        
+        return m2.add(h.multiply(q));
+    }
+    
+    /**
+     * Decrypt a cipher block with the CRT values on longs, where p and q fit
+     * in a long. The result m2 + h*q is only calculated on longs if n fits
+     * in a long too.
+     * @param c the cipher block to be decrypted
+     * @param crt the CRT values of the keys
+     * @param longN true if n fits in a long
+     * @return the decrypted block, which is equal to c^d (mod n)
+     */
+    private static BigInteger decryptCRT(BigInteger c, RSAKey.Decryption crt, boolean longN) {
+        
+        LongModulus pModulus = crt.pModulus;
+        LongModulus qModulus = crt.qModulus;
+        
+        long m1 = pModulus.pow(pModulus.reduce(c), crt.dP);
+        long m2 = qModulus.pow(qModulus.reduce(c), crt.dQ);
+        
+        long h = pModulus.multiply(pModulus.reduce(crt.qInv), pModulus.reduce(m1 - m2));
+        
+        // m2 + h*q < n, so it only fits in a long if n does
+        if (longN)
+            return BigInteger.valueOf(m2 + h * qModulus.getModulus());
+        
+        return BigInteger.valueOf(h).multiply(BigInteger.valueOf(qModulus.getModulus()))
+                                    .add(BigInteger.valueOf(m2));
     }
 
     /**
@@ -187,9 +300,14 @@ public class RSA implements Algorithm {
      * @param d the private key d, where d is inverse of e
      */
     public void setPrivateKeys(String p, String q, String d) {
-        this.p = new BigInteger(p);
-        this.q = new BigInteger(q);
-        this.d = new BigInteger(d);
+        
+        RSAKey key = getKey();
+        RSAKey newKey = new RSAKey(new BigInteger(p), new BigInteger(q), new BigInteger(d),
+                                   key.getN(), key.getE());
+        
+        // Keep the CRT values if the keys did not change
+        if (!newKey.equals(key))
+            setKey(newKey);
     }
     
     /**
@@ -198,8 +316,13 @@ public class RSA implements Algorithm {
      * @param e the public key e, where e is a random number between 1 and n
      */
     public void setPublicKeys(String n, String e) {
-        this.n = new BigInteger(n);
-        this.e = new BigInteger(e);
+        
+        RSAKey key = getKey();
+        RSAKey newKey = new RSAKey(key.getP(), key.getQ(), key.getD(),
+                                   new BigInteger(n), new BigInteger(e));
+        
+        if (!newKey.equals(key))
+            setKey(newKey);
     }
     
     /** 
@@ -207,7 +330,7 @@ public class RSA implements Algorithm {
      * @return the prime number p
      */
     public String getP() { 
-        return p.toString(); 
+        return getKey().getP().toString(); 
     }
     
     /** 
@@ -215,7 +338,7 @@ public class RSA implements Algorithm {
      * @return the prime number q
       */
     public String getQ() { 
-        return q.toString(); 
+        return getKey().getQ().toString(); 
     }
     
     /** 
@@ -223,7 +346,7 @@ public class RSA implements Algorithm {
      * @return the public key n
      */
     public String getN() { 
-        return n.toString(); 
+        return getKey().getN().toString(); 
     }
     
     /** 
@@ -231,7 +354,7 @@ public class RSA implements Algorithm {
      * @return the modulo m
      */
     public String getM() { 
-        return m.toString(); 
+        return modulo(getKey()).toString(); 
     }
     
     /** 
@@ -239,7 +362,7 @@ public class RSA implements Algorithm {
      * @return the public key e
      */
     public String getE() { 
-        return e.toString(); 
+        return getKey().getE().toString(); 
     }
     
     /** 
@@ -247,6 +370,6 @@ public class RSA implements Algorithm {
      * @return the private key d
      */
     public String getD() { 
-        return d.toString(); 
+        return getKey().getD().toString(); 
     }
 }
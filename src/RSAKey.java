@@ -0,0 +1,183 @@
+import java.math.BigInteger;
+
+/**
+ * An immutable set of RSA keys, the private keys p, q and d, and the public
+ * keys n and e. A key can be shared by any number of threads, and the
+ * values derived from it, the CRT values and the long arithmetic, are
+ * calculated once on first use and kept with the key.
+ *
+ * @author Su Khai Koh
+ */
+public final class RSAKey {
+
+    private final BigInteger p;     // prime number
+    private final BigInteger q;     // prime number
+    private final BigInteger d;     // inverse of e mod (p-1)(q-1)
+    private final BigInteger n;     // p*q
+    private final BigInteger e;     // public key
+
+    // Modulo n on longs, null if n is too big for a long
+    private final LongModulus nModulus;
+
+    // Values for decryption, calculated on the first decryption
+    private volatile Decryption decryption;
+
+    // Certainty used to check p and q are primes before using CRT
+    private static final int PRIME_CERTAINTY = 20;
+
+    /**
+     * Create a set of keys.
+     * @param p the private key p, where p is a prime number
+     * @param q the private key q, where q is a prime number
+     * @param d the private key d, where d is inverse of e
+     * @param n the public key n, where n = p*q
+     * @param e the public key e
+     */
+    public RSAKey(BigInteger p, BigInteger q, BigInteger d, BigInteger n, BigInteger e) {
+        this.p = p;
+        this.q = q;
+        this.d = d;
+        this.n = n;
+        this.e = e;
+
+        nModulus = LongModulus.of(n);
+    }
+
+    /**
+     * Get the prime number p.
+     * @return the prime number p
+     */
+    public BigInteger getP() {
+        return p;
+    }
+
+    /**
+     * Get the prime number q.
+     * @return the prime number q
+     */
+    public BigInteger getQ() {
+        return q;
+    }
+
+    /**
+     * Get the private key d, where d = e^-1 (mod (p-1)(q-1)).
+     * @return the private key d
+     */
+    public BigInteger getD() {
+        return d;
+    }
+
+    /**
+     * Get the public key n, where n = p*q.
+     * @return the public key n
+     */
+    public BigInteger getN() {
+        return n;
+    }
+
+    /**
+     * Get the public key e.
+     * @return the public key e
+     */
+    public BigInteger getE() {
+        return e;
+    }
+
+    /**
+     * Get the modulo n on longs.
+     * @return the modulo n, or null if n is too big for a long
+     */
+    LongModulus getNModulus() {
+        return nModulus;
+    }
+
+    /**
+     * Get the values for decryption, calculating them on the first call. Two
+     * threads may both calculate them, but they get the same values.
+     * @return the values for decryption
+     */
+    Decryption getDecryption() {
+
+        Decryption values = decryption;
+
+        if (values == null)
+            decryption = values = new Decryption();
+
+        return values;
+    }
+
+    /**
+     * Check whether the other object is a set of keys with the same values.
+     * @param o the other object
+     * @return true if all the keys are equal
+     */
+    public boolean equals(Object o) {
+
+        if (!(o instanceof RSAKey))
+            return false;
+
+        RSAKey other = (RSAKey) o;
+
+        return p.equals(other.p) && q.equals(other.q) && d.equals(other.d) &&
+               n.equals(other.n) && e.equals(other.e);
+    }
+
+    public int hashCode() {
+        return ((p.hashCode() * 31 + q.hashCode()) * 31 + d.hashCode()) * 31 + n.hashCode();
+    }
+
+    /**
+     * The values for decrypting with the Chinese Remainder Theorem, dP, dQ
+     * and qInv. These values allow decryption to be done with two
+     * exponentiations of half size instead of one full size exponentiation.
+     * They are only used if p and q are two distinct primes of n.
+     */
+    final class Decryption {
+
+        final boolean useCRT;       // true if the CRT values match n
+
+        final BigInteger dP;        // d mod (p-1)
+        final BigInteger dQ;        // d mod (q-1)
+        final BigInteger qInv;      // q^-1 (mod p)
+
+        // Modulo p and q on longs, null if they are too big for a long
+        final LongModulus pModulus;
+        final LongModulus qModulus;
+
+        Decryption() {
+
+            useCRT = !p.equals(q) && p.multiply(q).equals(n) &&
+                     p.isProbablePrime(PRIME_CERTAINTY) && q.isProbablePrime(PRIME_CERTAINTY);
+
+            if (!useCRT) {
+                dP = dQ = qInv = null;
+                pModulus = qModulus = null;
+                return;
+            }
+
+            // dP = d mod (p-1), dQ = d mod (q-1), qInv = q^-1 (mod p)
+            dP = reduceExponent(d, p);
+            dQ = reduceExponent(d, q);
+            qInv = q.modInverse(p);
+
+            pModulus = LongModulus.of(p);
+            qModulus = LongModulus.of(q);
+        }
+    }
+
+    /**
+     * Reduce the exponent d to d mod (prime-1). A zero exponent is replaced
+     * by prime-1, so that a block which is a multiple of the prime still
+     * decrypts to zero.
+     * @param d the exponent to be reduced
+     * @param prime the prime number p or q
+     * @return d mod (prime-1), or prime-1 if the remainder is zero
+     */
+    private static BigInteger reduceExponent(BigInteger d, BigInteger prime) {
+
+        BigInteger primeMinus1 = prime.subtract(BigInteger.ONE);
+        BigInteger reduced = d.mod(primeMinus1);
+
+        return reduced.signum() == 0 ? primeMinus1 : reduced;
+    }
+}
@@ -0,0 +1,201 @@
+import java.security.SecureRandom;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A source of random numbers for generating the keys, the prime numbers and
+ * the random k of ElGamal. Each thread gets its own random number generator
+ * from the source, so that no generator is created or shared for each
+ * number, and the threads never wait for each other.
+ *
+ * There are two sources:
+ *     FAST     ThreadLocalRandom, the default, which is cheap but not
+ *              suitable for keys that have to stay secret
+ *     STRONG   a SecureRandom for each thread
+ *
+ * Another source can be made by extending this class. The source counts
+ * the random numbers drawn for each kind of operation, so the cost of the
+ * randomness of an operation can be measured. A draw is one call to the
+ * random number generator, so filling an array of random bytes is one draw
+ * just like a single random int.
+ *
+ * @author Su Khai Koh
+ */
+public abstract class RandomSource {
+
+    // Kinds of operations that draw random numbers
+    public static final int PRIME = 0,     // searching for a prime number
+                            KEY   = 1,     // generating the other keys
+                            NONCE = 2;     // the random k of each block
+
+    private static final int OPERATIONS = 3;
+
+    public static final RandomSource FAST = new RandomSource("fast") {
+        protected Random threadRandom() {
+            return ThreadLocalRandom.current();
+        }
+    };
+
+    public static final RandomSource STRONG = new RandomSource("strong") {
+
+        private final ThreadLocal<SecureRandom> random = new ThreadLocal<SecureRandom>() {
+            protected SecureRandom initialValue() {
+                return new SecureRandom();
+            }
+        };
+
+        protected Random threadRandom() {
+            return random.get();
+        }
+    };
+
+    private static volatile RandomSource defaultSource = FAST;
+
+    private final String name;
+
+    // Number of random numbers drawn for each operation
+    private final LongAdder[] draws = new LongAdder[OPERATIONS];
+
+    // Counting generators of each thread, one for each operation
+    private final ThreadLocal<Random[]> generators = new ThreadLocal<Random[]>() {
+        protected Random[] initialValue() {
+            return new Random[OPERATIONS];
+        }
+    };
+
+    /**
+     * Create a source of random numbers.
+     * @param name the name of the source
+     */
+    protected RandomSource(String name) {
+
+        this.name = name;
+
+        for (int i = 0; i < OPERATIONS; i++)
+            draws[i] = new LongAdder();
+    }
+
+    /**
+     * Get the random number generator of the current thread. It is only
+     * used by the current thread.
+     * @return the random number generator
+     */
+    protected abstract Random threadRandom();
+
+    /**
+     * Get the source that is used when no other source is given.
+     * @return the default source
+     */
+    public static RandomSource getDefault() {
+        return defaultSource;
+    }
+
+    /**
+     * Set the source that is used when no other source is given.
+     * @param source the default source
+     */
+    public static void setDefault(RandomSource source) {
+        defaultSource = source;
+    }
+
+    /**
+     * Get the random number generator of the current thread for an
+     * operation. The random numbers drawn from it are counted for the
+     * operation. It must only be used by the current thread.
+     * @param operation the operation, PRIME, KEY or NONCE
+     * @return the random number generator
+     */
+    public Random getRandom(int operation) {
+
+        Random[] random = generators.get();
+
+        if (random[operation] == null)
+            random[operation] = new CountingRandom(threadRandom(), draws[operation]);
+
+        return random[operation];
+    }
+
+    /**
+     * Get the number of random numbers drawn for an operation, which is
+     * the number of calls to its generators and not the number of bits.
+     * @param operation the operation, PRIME, KEY or NONCE
+     * @return the number of draws
+     */
+    public long getDraws(int operation) {
+        return draws[operation].sum();
+    }
+
+    /**
+     * Set the number of random numbers drawn for every operation to zero.
+     */
+    public void resetDraws() {
+        for (LongAdder count : draws)
+            count.reset();
+    }
+
+    /**
+     * Get the name of the source.
+     * @return the name
+     */
+    public String toString() {
+        return name;
+    }
+
+    /**
+     * A random number generator that counts the numbers drawn from another
+     * generator. Each call counts as one draw, no matter how many bits it
+     * takes.
+     */
+    private static class CountingRandom extends Random {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Random random;
+        private final LongAdder draws;
+
+        CountingRandom(Random random, LongAdder draws) {
+
+            // A fixed seed, the seed of this generator is never used
+            super(0);
+
+            this.random = random;
+            this.draws = draws;
+        }
+
+        protected int next(int bits) {
+            draws.increment();
+            return random.nextInt() >>> (Integer.SIZE - bits);
+        }
+
+        public int nextInt() {
+            draws.increment();
+            return random.nextInt();
+        }
+
+        public int nextInt(int bound) {
+            draws.increment();
+            return random.nextInt(bound);
+        }
+
+        public long nextLong() {
+            draws.increment();
+            return random.nextLong();
+        }
+
+        public double nextDouble() {
+            draws.increment();
+            return random.nextDouble();
+        }
+
+        public boolean nextBoolean() {
+            draws.increment();
+            return random.nextBoolean();
+        }
+
+        public void nextBytes(byte[] bytes) {
+            draws.increment();
+            random.nextBytes(bytes);
+        }
+    }
+}